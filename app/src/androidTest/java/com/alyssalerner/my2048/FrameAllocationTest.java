@@ -0,0 +1,80 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+/**
+ * Runs the same update/draw cycle as GameThread and checks that nothing is allocated once the
+ * game is running, including frames where tiles slide, merge and spawn.
+ */
+public class FrameAllocationTest extends AndroidTestCase {
+    private static final int WARM_UP_FRAMES = 200;
+    private static final int FRAMES = 1000;
+    private static final int FRAMES_PER_MOVE = 8;
+    private static final int BOARD_SIZE = 416;
+    private static final long FRAME_NANOS = 1000000000L / 60;
+    private static final Board.Direction[] DIRECTIONS = Board.Direction.values();   // values() copies the array on every call
+
+    private Board board;
+    private Canvas canvas;
+    private int nextDirection;
+    private long startTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Bitmap boardImage = Bitmap.createBitmap(BOARD_SIZE, BOARD_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap tiles = Bitmap.createBitmap(100, 100 * 11, Bitmap.Config.ARGB_8888);
+        board = new Board(boardImage, tiles, new Rect(0, 0, BOARD_SIZE, BOARD_SIZE), 1.0, null);
+        canvas = new Canvas(Bitmap.createBitmap(BOARD_SIZE, BOARD_SIZE, Bitmap.Config.ARGB_8888));
+        startTime = System.nanoTime();
+    }
+
+    public void testFramesDoNotAllocate() {
+        // Let the tile pool and lists reach their working size first
+        for(int frame = 0; frame < WARM_UP_FRAMES; frame++)
+            runFrame(frame);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for(int frame = WARM_UP_FRAMES; frame < WARM_UP_FRAMES + FRAMES; frame++)
+            runFrame(frame);
+        Debug.stopAllocCounting();
+
+        assertEquals("Objects allocated over " + FRAMES + " frames", 0, Debug.getThreadAllocCount());
+    }
+
+    // One pass of GameThread at 60 FPS: update, draw, and a fling every few frames
+    private void runFrame(int frame) {
+        board.update(startTime + frame * FRAME_NANOS);
+        board.draw(canvas);
+        if(board.gameLost())
+            board.reset();
+
+        if(frame % FRAMES_PER_MOVE == 0 && board.boardUnlocked())
+            fling();
+    }
+
+    // Move in the next direction that is legal, cycling through them so merges keep happening
+    private void fling() {
+        for(int tries = 0; tries < 4; tries++) {
+            Board.Direction direction = DIRECTIONS[nextDirection];
+            nextDirection = (nextDirection + 1) % 4;
+
+            if(board.canMoveInDirection(direction)) {
+                board.lock();
+                switch(direction) {
+                    case RIGHT: board.slideRight(); break;
+                    case LEFT:  board.slideLeft();  break;
+                    case UP:    board.slideUp();    break;
+                    case DOWN:  board.slideDown();  break;
+                    default:    break;
+                }
+                return;
+            }
+        }
+    }
+}
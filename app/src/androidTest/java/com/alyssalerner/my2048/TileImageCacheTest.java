@@ -0,0 +1,77 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Measures what drawing pre-scaled tiles saves over letting the canvas scale the sprite sheet's
+ * tiles on every draw, and how much memory the scaled images take, and checks that tiles past
+ * the sheet are drawn in the background.
+ */
+public class TileImageCacheTest extends AndroidTestCase {
+    private static final String TAG = "TileImageCacheTest";
+    private static final int TILE_SIZE = 240;       // About a 4x4 tile on a 1080-pixel-wide screen
+    private static final int DRAWS = 20000;
+    private static final long GENERATE_TIMEOUT_MILLIS = 5000;
+
+    private Bitmap sheet;
+    private TileImageCache cache;
+    private Canvas canvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        sheet = Bitmap.createBitmap(TileImageCache.SHEET_TILE_LENGTH,
+                TileImageCache.SHEET_TILE_LENGTH * TileImageCache.SHEET_TILES, Bitmap.Config.ARGB_8888);
+        cache = new TileImageCache(sheet, TileImageCache.defaultMaxBytes());
+        cache.setTileSize(TILE_SIZE);
+        Tile.size = TILE_SIZE;
+        canvas = new Canvas(Bitmap.createBitmap(TILE_SIZE * 4, TILE_SIZE * 4, Bitmap.Config.ARGB_8888));
+    }
+
+    public void testDrawCostAndMemory() {
+        Bitmap unscaled = Bitmap.createBitmap(sheet, 0, 0, TileImageCache.SHEET_TILE_LENGTH, TileImageCache.SHEET_TILE_LENGTH);
+        Tile scaledOnDraw = new Tile(1, 0, 0, unscaled, 0, 0);
+        Tile preScaled = new Tile(1, 0, 0, cache.get(1), 0, 0);
+
+        // Warm up both paths before timing them
+        drawTimed(scaledOnDraw, DRAWS / 10);
+        drawTimed(preScaled, DRAWS / 10);
+        long scaledNanos = drawTimed(scaledOnDraw, DRAWS);
+        long preScaledNanos = drawTimed(preScaled, DRAWS);
+
+        int expectedBytes = TileImageCache.SHEET_TILES * cache.get(1).getRowBytes() * TILE_SIZE;
+        Log.i(TAG, "Draw: scaled on draw " + scaledNanos / DRAWS + " ns, pre-scaled " + preScaledNanos / DRAWS
+                + " ns; images " + cache.getBytes() + " bytes, peak " + cache.getPeakBytes() + " bytes");
+
+        assertEquals(TILE_SIZE, cache.get(1).getWidth());
+        assertEquals(expectedBytes, cache.getPeakBytes());
+    }
+
+    public void testLargeTilesAreDrawnInBackground() throws InterruptedException {
+        int exponent = TileImageCache.SHEET_TILES + 1;  // 4096
+        int version = cache.getVersion();
+
+        // The largest sheet tile stands in until the real image is ready
+        assertSame(cache.get(TileImageCache.SHEET_TILES), cache.get(exponent));
+
+        long deadline = System.currentTimeMillis() + GENERATE_TIMEOUT_MILLIS;
+        while(cache.getVersion() == version && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        Bitmap image = cache.get(exponent);
+        assertNotSame(cache.get(TileImageCache.SHEET_TILES), image);
+        assertEquals(TILE_SIZE, image.getWidth());
+        assertEquals(TILE_SIZE, image.getHeight());
+    }
+
+    private long drawTimed(Tile tile, int draws) {
+        long start = System.nanoTime();
+        for(int i = 0; i < draws; i++)
+            tile.draw(canvas);
+        return System.nanoTime() - start;
+    }
+}
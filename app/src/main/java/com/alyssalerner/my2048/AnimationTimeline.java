@@ -0,0 +1,92 @@
+package com.alyssalerner.my2048;
+
+/**
+ * The tiles that are animating right now: slides in progress, and merges waiting for both of their
+ * tiles to arrive.
+ *
+ * Board adds a tile when its slide starts and a pair when two tiles are going to merge, and update()
+ * only touches those, so a frame costs O(moving tiles) however big the board is. A finished slide
+ * is dropped by moving the last one into its place. Merges whose tiles have both arrived are handed
+ * back together at the end of the frame (see getRetired), so Board can replace them in one pass.
+ */
+public class AnimationTimeline {
+    private final Tile[] slides;
+    private int slideCount;
+    private final Tile[] merges;    // The tile that slides onto its merge twin
+    private int mergeCount;
+    private final Tile[] retired;
+    private int retiredCount;
+
+    // capacity is the most tiles that can be on the board
+    public AnimationTimeline(int capacity) {
+        slides = new Tile[capacity];
+        merges = new Tile[capacity];
+        retired = new Tile[capacity];
+    }
+
+    // Follow a tile whose slide has just started (see Tile.performSlide)
+    public void addSlide(Tile tile) {
+        slides[slideCount++] = tile;
+    }
+
+    // Follow a tile that will merge with its twin once both have stopped
+    public void addMerge(Tile tile) {
+        merges[mergeCount++] = tile;
+    }
+
+    // Move every sliding tile to where it should be at frameTime, then collect the merges whose
+    // tiles have both arrived. Returns how many were collected.
+    public int update(long frameTime) {
+        for(int i = 0; i < slideCount; ) {
+            Tile t = slides[i];
+            t.update(frameTime);
+            if(t.getSliding())
+                i++;
+            else {
+                slides[i] = slides[--slideCount];
+                slides[slideCount] = null;
+            }
+        }
+
+        retiredCount = 0;
+        for(int i = 0; i < mergeCount; ) {
+            Tile t = merges[i];
+            if(t.getSliding() || t.getMergeTwin().getSliding())
+                i++;
+            else {
+                retired[retiredCount++] = t;
+                merges[i] = merges[--mergeCount];
+                merges[mergeCount] = null;
+            }
+        }
+        return retiredCount;
+    }
+
+    // Put every sliding tile at the end of its slide; the next update() then finishes the merges
+    public void finishSlides() {
+        for(int i = 0; i < slideCount; i++)
+            slides[i].finishSlide();
+    }
+
+    // The i-th merge collected by the last update; its twin is getMergeTwin()
+    public Tile getRetired(int i) {
+        return retired[i];
+    }
+
+    // True when nothing is sliding or waiting to merge
+    public boolean isIdle() {
+        return slideCount == 0 && mergeCount == 0;
+    }
+
+    // Forget every animation, e.g. when the tiles are all replaced
+    public void clear() {
+        for(int i = 0; i < slides.length; i++) {
+            slides[i] = null;
+            merges[i] = null;
+            retired[i] = null;
+        }
+        slideCount = 0;
+        mergeCount = 0;
+        retiredCount = 0;
+    }
+}
@@ -7,157 +7,313 @@ import android.graphics.Rect;
 import android.view.View;
 
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * Created by Alyssa on 2016-02-19.
  */
 public class Board {
-    public final int N_TILES = 11;          // Number of tiles starting with 2, 4, 8, 16, etc.
     public final int BORDER_SIZE = 8;       // Number of pixels the border is in the image file
-    public final int ROWS = 4;              // Number of rows and columns
+    public final int ROWS;                  // Number of rows and columns (GridBoard.MIN_SIZE to GridBoard.MAX_SIZE)
     public final int TILE_IMG_LENGTH = 100; // The height of each tile image in file
     public final int WIN_TILE = 2048;
+    public final int UNDO_LEVELS = 1024;    // Number of earlier positions that can be returned to
 
+    // Order matches the BitBoard direction codes, so ordinal() can be passed straight to BitBoard
     public enum Direction {RIGHT, LEFT, UP, DOWN, UNKNOWN};
 
-    // tilesOnBoard and board contain the same Tile objects
-    private ArrayList<Tile> tilesOnBoard = new ArrayList<Tile>();
-    private Tile[][] board = new Tile[ROWS][ROWS];
+    // tilesOnBoard and board contain the same Tile objects, and only drive the animation.
+    // The game itself is played on grid, a packed GridBoard (with score and status) that is updated as soon as a move is made.
+    private ArrayList<Tile> tilesOnBoard;
+    private Tile[][] board;
+    private GridBoard grid;
+
+    // Tiles are recycled and the row/column buffers are reused, so running the game doesn't allocate
+    private TilePool tilePool;
+    private AnimationTimeline timeline;     // Only the tiles that are sliding or about to merge
+    private Tile[] lineBuffer;
+    private long[] rowBuffer;       // Packed rows on their way to or from history
+
+    private UndoHistory history;
+    private JournalWriter journal;  // Records the game if set (see setJournal)
+    private int lastDirection;      // BitBoard direction of the move being animated
+    private int moveCount;          // Moves made this game, less any undone (counted from when it was restored)
+    private volatile byte[] settledState;   // The last position at rest, encoded for saveState()
 
     private double scaleFactor;     // Amount to scale the board image and tiles by
     private Rect boardSpace;        // The rectangle that the board should take up on the screen
     private Bitmap boardImage;      // Image of board background
-    private Bitmap[] tileImages;    // Images of number-tiles in increasing order
+    private TileImageCache tileImages;  // Images of number-tiles, scaled to tileSize
+    private int tileImagesVersion;  // tileImages.getVersion() when the tiles' images were last looked up
+    private int tileSize;           // Pixel width and height of a tile
     private int tilesX;             // Top-left pixel coordinate of the tiles
     private int tilesY;
     private boolean playerCanMove;  // False whenever tiles are still sliding
-    private Random rand = new Random();
+    private long time;              // Frame time of the last update, when moves made now start sliding
+    private GameRandom rand;        // Only used to spawn tiles, so a game replays exactly from its seed
+
+
+    // savedState is null for a new game, or comes from saveState() if the game was only paused
+    public Board(Bitmap board, Bitmap tiles, Rect b, double s, byte[] savedState) {
+        this(board, tiles, b, s, BitBoard.ROWS, savedState);
+    }
+
+    // size is the number of rows and columns of a new game; a saved game keeps the size it was saved with
+    public Board(Bitmap board, Bitmap tiles, Rect b, double s, int size, byte[] savedState) {
+        this(board, new TileImageCache(tiles, TileImageCache.defaultMaxBytes()), b, s, size, savedState, new GameRandom());
+    }
 
+    // tiles may be shared with earlier boards, so images already scaled to this board's tile size are reused
+    public Board(Bitmap board, TileImageCache tiles, Rect b, double s, int size, byte[] savedState, GameRandom rand) {
+        ROWS = (savedState == null)? size : StateCodec.boardSize(savedState);
+        grid = new GridBoard(ROWS);
+        tilesOnBoard = new ArrayList<Tile>(ROWS*ROWS);
+        this.board = new Tile[ROWS][ROWS];
+        tilePool = new TilePool(ROWS*ROWS);
+        timeline = new AnimationTimeline(ROWS*ROWS);
+        lineBuffer = new Tile[ROWS];
+        rowBuffer = new long[ROWS];
+        history = new UndoHistory(UNDO_LEVELS, ROWS);
 
-    public Board(Bitmap board, Bitmap tiles, Rect b, double s, ArrayList<SerializableTile> savedTiles) {
+        this.rand = rand;
         scaleFactor = s;
-        boardImage = board;
+        boardImage = boardImageFor(board, ROWS);
         boardSpace = b;
         playerCanMove = true;
 
-        // Fill tile images
-        tileImages = new Bitmap[N_TILES];
-
-        for(int i = 0; i < N_TILES; i++) {
-            try {
-                tileImages[i] = Bitmap.createBitmap(tiles, 0, TILE_IMG_LENGTH*i, TILE_IMG_LENGTH, TILE_IMG_LENGTH);
-            } catch(Exception e){ e.printStackTrace(); }
-        }
-
         // Find out where to start drawing tiles
         tilesX = (int)(boardSpace.left + (BORDER_SIZE * scaleFactor));
         tilesY = (int)(boardSpace.top + (BORDER_SIZE * scaleFactor));
 
-        Tile.size = (int)(TILE_IMG_LENGTH * scaleFactor);   // Real pixel size of tile
+        // Tiles share the space inside the border, however many there are
+        tileSize = (int)((boardSpace.width() - 2 * BORDER_SIZE * scaleFactor) / ROWS);
+        Tile.size = tileSize;
+
+        // Tile images are scaled to tileSize once, rather than by the canvas on every draw
+        tileImages = tiles;
+        tileImages.setTileSize(tileSize);
+        tileImagesVersion = tileImages.getVersion();
 
         // Create 2 random tiles if this is a new game
-        if(savedTiles == null) {
+        if(savedState == null) {
             createNewTile();
             createNewTile();
         }
         // Restore old tiles if game was only paused
         else {
-            for(SerializableTile tile : savedTiles) {
-                createTileAt(tile.getValue(), tile.getRow(), tile.getCol());
-            }
+            StateCodec.decode(savedState, grid, rand);
+            addTilesFromState();
+        }
+        recordHistory();
+    }
+
+    // Advance the animation to the given frame time (on the System.nanoTime() clock).
+    // Only tiles that are moving are touched; merges that finish are replaced all at once at the end.
+    public void update(long frameTime) {
+        time = frameTime;
+
+        // Pick up tile images that have finished drawing in the background
+        if(tileImages.getVersion() != tileImagesVersion)
+            refreshTileImages();
+
+        boolean wasAnimating = !playerCanMove;
+        int merged = timeline.update(frameTime);
+        if(merged > 0)
+            replaceMergedTiles(merged);
+        playerCanMove = timeline.isIdle();
+
+        // Make a new tile once the move has finished animating
+        if(wasAnimating && playerCanMove) {
+            int cell = createNewTile();
+            recordHistory();
+            if(journal != null && cell >= 0 && grid.fitsBitBoard())
+                journal.recordMove(lastDirection, cell, grid.getExponent(cell / ROWS, cell % ROWS));
         }
     }
 
-    public void update() {
-        Tile mergeTwin;
-
-        boolean makeNewTile = false;    // True if a new tile should be made once board is unlocked
-        if(!playerCanMove) makeNewTile = true;
-        playerCanMove = true;
-
-        for(Tile t : tilesOnBoard) {
-            // Test whether at least one tile is still sliding
-            if(t.getXPos() != t.getGoalXPos() || t.getYPos() != t.getGoalYPos())
-                playerCanMove = false;
-
-            t.update();
-
-            // If both tiles to be merged have reached their final positions
-            if(t.needsToBeReplaced() && !t.getSliding() && !t.getMergeTwin().getSliding()) {
-                mergeTwin = t.getMergeTwin();
-
-                // Remove both the tile and its twin
-                tilesOnBoard.remove(t);
-                tilesOnBoard.remove(mergeTwin);
+    // Finish the move being animated straight away (slides, merges and the new tile), so that the
+    // next move can be made without waiting
+    public void fastForward(long frameTime) {
+        time = frameTime;
+        if(playerCanMove) return;
+        timeline.finishSlides();
+        update(frameTime);
+    }
 
-                // Create a new tile
-                int newValue = t.getValue()*2;
-                Tile newTile = new Tile(t.getValue()*2, t.getRow(), t.getCol(), tileImages[getTileIndex(newValue)], t.getXPos(), t.getYPos());
-                board[t.getRow()][t.getCol()] = newTile;
-                tilesOnBoard.add(newTile);
-            }
+    // Replace each pair of tiles whose merge finished this frame with one tile of twice the value.
+    // The pairs are dropped from tilesOnBoard in a single pass, and the new tiles are added after.
+    private void replaceMergedTiles(int merged) {
+        int kept = 0;
+        for(int i = 0; i < tilesOnBoard.size(); i++) {
+            Tile t = tilesOnBoard.get(i);
+            if(!isMergeFinished(t))
+                tilesOnBoard.set(kept++, t);
         }
-
-        if(makeNewTile && playerCanMove) {
-            createNewTile();
+        for(int i = tilesOnBoard.size() - 1; i >= kept; i--)
+            tilesOnBoard.remove(i);
+
+        for(int i = 0; i < merged; i++) {
+            Tile from = timeline.getRetired(i);
+            Tile into = from.getMergeTwin();
+            int newExponent = into.getExponent() + 1;
+            int row = into.getRow();
+            int col = into.getCol();
+            int xPos = into.getXPos();
+            int yPos = into.getYPos();
+
+            // Released first, so the new tile can reuse one of them
+            tilePool.release(from);
+            tilePool.release(into);
+            Tile newTile = tilePool.obtain(newExponent, row, col, tileImages.get(newExponent), xPos, yPos);
+            board[row][col] = newTile;
+            tilesOnBoard.add(newTile);
         }
     }
 
+    // True for both tiles of a merge once they have stopped sliding
+    private static boolean isMergeFinished(Tile t) {
+        return t.needsToBeReplaced() && !t.getSliding() && !t.getMergeTwin().getSliding();
+    }
+
+    // Draw straight from the tiles, on the thread that updates them. The game itself draws from
+    // snapshots on the render thread instead (see BoardRenderer).
     public void draw(Canvas canvas) {
         canvas.drawBitmap(boardImage, null, boardSpace, null);
 
         // Draw any tiles that exist on the board
-        for(Tile t : tilesOnBoard) {
-            t.draw(canvas);
+        for(int i = 0; i < tilesOnBoard.size(); i++) {
+            tilesOnBoard.get(i).draw(canvas);
+        }
+    }
+
+    // Record where every tile is now, for drawing on another thread (see BoardRenderer)
+    public void writeSnapshot(BoardSnapshot snapshot) {
+        snapshot.clear(time, !playerCanMove);
+        for(int i = 0; i < tilesOnBoard.size(); i++) {
+            Tile t = tilesOnBoard.get(i);
+            snapshot.add(t.getId(), t.getXPos(), t.getYPos(), t.getExponent());
         }
     }
 
     // Called when user flings right
     public void slideRight() {
+        makeMove(BitBoard.RIGHT);
+
         simpleSlideRight();
         mergeRight();
         simpleSlideRight();
-        for(Tile t : tilesOnBoard) {
-            t.performSlide();
-        }
+        performSlide();
     }
 
     // Called when user flings left
     public void slideLeft() {
+        makeMove(BitBoard.LEFT);
+
         simpleSlideLeft();
         mergeLeft();
         simpleSlideLeft();
-        for(Tile t : tilesOnBoard) {
-            t.performSlide();
-        }
+        performSlide();
     }
 
     // Called when user flings up
     public void slideUp() {
+        makeMove(BitBoard.UP);
+
         simpleSlideUp();
         mergeUp();
         simpleSlideUp();
-        for(Tile t : tilesOnBoard) {
-            t.performSlide();
-        }
+        performSlide();
     }
 
     // Called when user flings down
     public void slideDown() {
+        makeMove(BitBoard.DOWN);
+
         simpleSlideDown();
         mergeDown();
         simpleSlideDown();
-        for(Tile t : tilesOnBoard) {
-            t.performSlide();
+        performSlide();
+    }
+
+    // Start the slide animation on every tile that has a new goal position, and put those on the timeline
+    private void performSlide() {
+        for(int i = 0; i < tilesOnBoard.size(); i++) {
+            Tile t = tilesOnBoard.get(i);
+            t.performSlide(time);
+            if(t.getSliding())
+                timeline.addSlide(t);
         }
     }
 
+    // Play the move on the packed grid; the tiles are then animated to match
+    private void makeMove(int direction) {
+        grid.move(direction);
+        lastDirection = direction;
+        moveCount++;
+    }
+
     // Reset board to starting position
     public void reset() {
         removeTiles();
         createNewTile();
         createNewTile();
+        history.clear();
+        recordHistory();
+        journalPosition();
+        moveCount = 0;
+    }
+
+    // Go back to the position before the last move. Returns false if there is none or tiles are still sliding.
+    public boolean undo() {
+        if(!playerCanMove || !history.undo()) return false;
+        restoreFromHistory();
+        moveCount--;
+        journalPosition();
+        return true;
+    }
+
+    // Replay the move that was last undone. Returns false if there is none or tiles are still sliding.
+    public boolean redo() {
+        if(!playerCanMove || !history.redo()) return false;
+        restoreFromHistory();
+        moveCount++;
+        journalPosition();
+        return true;
+    }
+
+    // Record every move from now on to the given journal (or stop recording if null).
+    // Journals hold BitBoards, so only 4x4 positions without tiles above 32768 are recorded.
+    public void setJournal(JournalWriter journal) {
+        this.journal = journal;
+    }
+
+    // Tell the journal that the game jumped to a new position instead of making a move
+    private void journalPosition() {
+        if(journal != null && grid.fitsBitBoard())
+            journal.recordPosition(grid.toBitBoard(), grid.getScore());
+    }
+
+    // Remember the current (settled) position so that it can be returned to
+    private void recordHistory() {
+        grid.copyRows(rowBuffer);
+        history.record(rowBuffer, grid.getScore(), rand.getState());
+        publishState();
+    }
+
+    // Replace the tiles with the history's current position. The generator is restored too,
+    // so making the same move again spawns the same tile.
+    private void restoreFromHistory() {
+        removeTiles();
+        history.copyBoard(rowBuffer);
+        grid.reset(rowBuffer, history.getScore());
+        rand.setState(history.getRandomState());
+        addTilesFromState();
+        publishState();
+    }
+
+    // Encode the position the board has just settled in for saveState(). Only called between moves,
+    // so a slide whose new tile hasn't appeared yet is never saved.
+    private void publishState() {
+        settledState = StateCodec.encode(grid, rand);
     }
 
     // Determine direction given x and y velocity (of a fling)
@@ -181,53 +337,12 @@ public class Board {
 
     // Determine if there's room for tiles to move in the given direction
     public boolean canMoveInDirection(Direction direction) {
-        if(direction == Direction.RIGHT || direction == Direction.LEFT) {
-            int tilesInRow, start;
-            for(int i = 0; i < ROWS; i++) {
-
-                tilesInRow = 0;
-                // Determine number of tiles in this row
-                for(int j = 0; j < ROWS; j++)
-                    if(board[i][j] != null)
-                        tilesInRow++;
-
-                start = (direction == Direction.RIGHT)? ROWS-tilesInRow : 0;
-                // Can't move if tiles are already as far as possible in appropriate direction
-                for(int j = start; j < start+tilesInRow; j++) {
-                    if(board[i][j] == null )
-                        return true;
-
-                    // Can also move if two identical tiles in a row
-                    if(j < start+tilesInRow-1 && board[i][j+1] != null && board[i][j].getValue() == board[i][j+1].getValue())
-                        return true;
-                }
-            }
-        }
-        else if(direction == Direction.DOWN || direction == Direction.UP) {
-            int tilesInCol, start;
-            for(int j = 0; j < ROWS; j++) {
-
-                tilesInCol = 0;
-                // Determine number of tiles in this col
-                for(int i = 0; i < ROWS; i++)
-                    if(board[i][j] != null)
-                        tilesInCol++;
-
-                start = (direction == Direction.DOWN)? ROWS-tilesInCol : 0;
-                // Can't move if tiles are already as far as possible in appropriate direction
-                for(int i = start; i < start+tilesInCol; i++) {
-                    if(board[i][j] == null)
-                        return true;
-
-                    // Can also move if two identical tiles in a col
-                    if(i < start+tilesInCol-1 && board[i+1][j] != null && board[i][j].getValue() == board[i+1][j].getValue())
-                        return true;
-                }
-            }
-        }
-        return false;
+        return grid.canMove(direction.ordinal());
     }
 
+    // The sliding and merging below is copied into the simulator's LegacyRules, which its Verifier
+    // checks against GridBoard and BitBoard; change both together.
+
     // Find goal positions for all tiles if sliding right, but not performing any merges (treating all tiles as walls)
     private void simpleSlideRight() {
 
@@ -236,7 +351,7 @@ public class Board {
 
         // Do one row at a time
         for(int i = 0; i < ROWS; i++) {
-            tilesInCurRow = new Tile[ROWS];
+            tilesInCurRow = clearLineBuffer();
             tilesInCurRowIndex = ROWS-1;
 
             // Fill tilesInCurRow with all the tiles in row i, but moved as far right as they can go
@@ -258,7 +373,7 @@ public class Board {
 
         // Do one row at a time
         for(int i = 0; i < ROWS; i++) {
-            tilesInCurRow = new Tile[ROWS];
+            tilesInCurRow = clearLineBuffer();
             tilesInCurRowIndex = 0;
 
             // Fill tilesInCurRow with all the tiles in row i, but moved as far left as they can go
@@ -280,7 +395,7 @@ public class Board {
 
         // Do one column at a time
         for(int j = 0; j < ROWS; j++) {
-            tilesInCurCol = new Tile[ROWS];
+            tilesInCurCol = clearLineBuffer();
             tilesInCurColIndex = 0;
 
             // Fill tilesInCurCol with all the tiles in col j, but moved as far up as they can go
@@ -303,7 +418,7 @@ public class Board {
 
         // Do one col at a time
         for(int j = 0; j < ROWS; j++) {
-            tilesInCurCol = new Tile[ROWS];
+            tilesInCurCol = clearLineBuffer();
             tilesInCurColIndex = ROWS-1;
 
             // Fill tilesInCurRow with all the tiles in col i, but moved as far down as they can go
@@ -325,7 +440,7 @@ public class Board {
                 curTile = board[i][j];
                 nextTile = board[i][j - 1];
                 if(curTile != null && nextTile != null) {
-                    if (curTile.getValue() == nextTile.getValue()) {
+                    if (curTile.getExponent() == nextTile.getExponent()) {
                         mergeInto(nextTile, curTile);
                     }
                 }
@@ -341,7 +456,7 @@ public class Board {
                 curTile = board[i][j];
                 nextTile = board[i][j + 1];
                 if(curTile != null && nextTile != null) {
-                    if(curTile.getValue() == nextTile.getValue()) {
+                    if(curTile.getExponent() == nextTile.getExponent()) {
                         mergeInto(nextTile, curTile);
                     }
                 }
@@ -357,7 +472,7 @@ public class Board {
                 curTile = board[i][j];
                 nextTile = board[i+1][j];
                 if(curTile != null && nextTile != null) {
-                    if(curTile.getValue() == nextTile.getValue()) {
+                    if(curTile.getExponent() == nextTile.getExponent()) {
                         mergeInto(nextTile, curTile);
                     }
                 }
@@ -373,7 +488,7 @@ public class Board {
                 curTile = board[i][j];
                 nextTile = board[i-1][j];
                 if(curTile != null && nextTile != null) {
-                    if(curTile.getValue() == nextTile.getValue()) {
+                    if(curTile.getExponent() == nextTile.getExponent()) {
                         mergeInto(nextTile, curTile);
                     }
                 }
@@ -391,6 +506,7 @@ public class Board {
         to.setMergeAfterSlide(true);
         from.setMergeTwin(to);
         to.setMergeTwin(from);
+        timeline.addMerge(from);
     }
 
     // Copy the given row to the board at the given row index, and set relevant parameters for that tile
@@ -431,31 +547,12 @@ public class Board {
 
     // Determine if the game has been won (if a 2048 tile exists)
     public boolean gameWon() {
-        for(Tile t : tilesOnBoard) {
-            if(t.getValue() == WIN_TILE) {
-                return true;
-            }
-        }
-        return false;
+        return grid.getMaxExponent() >= BitBoard.exponentOf(WIN_TILE);
     }
 
-    // Determine if the game has been lost (all spaces are full)
+    // Determine if the game has been lost (no move is possible)
     public boolean gameLost() {
-        // Cannot have lost if there are some empty tiles
-        if(tilesOnBoard.size() <  ROWS*ROWS) {
-            return false;
-        }
-
-        // Check if there are any two consecutive tiles
-        for(int i = 0; i < ROWS; i++) {
-            for(int j = 0; j < ROWS; j++) {
-                if(j < ROWS-1 && board[i][j].getValue() == board[i][j+1].getValue())
-                    return false;
-                if(i < ROWS-1 && board[i][j].getValue() == board[i+1][j].getValue())
-                    return false;
-            }
-        }
-        return true;
+        return !grid.movesAvailable();
     }
 
     // Don't allow player to move
@@ -468,34 +565,48 @@ public class Board {
         return playerCanMove;
     }
 
-    // Randomly place a 2 or 4 tile on the board
-    // REQ: Board isn't full (if full, infinite loop will occur)
-    public void createNewTile() {
-        // Decide whether to place 2 or 4 tile
-        int tileValue = (rand.nextInt() % 2 == 0)? 2 : 4;
+    // Randomly place a 2 or 4 tile on the board, returning the cell (row*ROWS + col)
+    // Does nothing and returns -1 if the board is full
+    public int createNewTile() {
+        int cell = grid.spawn(rand);
+        if(cell < 0) return cell;
 
-        // Find an empty space to put the new tile
-        int i = rand.nextInt(ROWS) % ROWS;
-        int j = rand.nextInt(ROWS) % ROWS;
+        int row = cell / ROWS;
+        int col = cell % ROWS;
+        addTile(grid.getExponent(row, col), row, col);
+        return cell;
+    }
 
-        try {
-            while (tileAt(i, j)) {
-                i = rand.nextInt(ROWS) % ROWS;
-                j = rand.nextInt(ROWS) % ROWS;
-            }
-        } catch(ArrayIndexOutOfBoundsException e) { e.printStackTrace(); }
+    public void createTileAt(int value, int row, int col) {
+        int exponent = BitBoard.exponentOf(value);
+        grid.place(row, col, exponent);
+        addTile(exponent, row, col);
+    }
 
-        createTileAt(tileValue, i, j);
+    // The game (board, score and spawn generator) as of its last position at rest, encoded so that
+    // the constructor can restore it. Can be called from any thread while the game is being played.
+    public byte[] saveState() {
+        return settledState;
     }
 
-    public void createTileAt(int value, int row, int col) {
+    // Create a Tile for every cell of grid, straight from the packed rows
+    private void addTilesFromState() {
+        for(int i = 0; i < ROWS; i++)
+            for(int j = 0; j < ROWS; j++) {
+                int exponent = grid.getExponent(i, j);
+                if(exponent != 0)
+                    addTile(exponent, i, j);
+            }
+    }
+
+    // Create the Tile that animates a value already placed in grid
+    private void addTile(int exponent, int row, int col) {
         // Determine tile parameters
-        int tileIndex = getTileIndex(value);
-        int tileXPos = tilesX + (Tile.size * col);
-        int tileYPos = tilesY + (Tile.size * row);
+        int tileXPos = getTilePosX(col);
+        int tileYPos = getTilePosY(row);
 
         // Create the tile and add it to both tile lists
-        Tile tile = new Tile(value, row, col, tileImages[tileIndex], tileXPos, tileYPos);
+        Tile tile = tilePool.obtain(exponent, row, col, tileImages.get(exponent), tileXPos, tileYPos);
         tilesOnBoard.add(tile);
         board[row][col] = tile;
     }
@@ -504,33 +615,107 @@ public class Board {
         return tilesOnBoard;
     }
 
-    // Determines whether a tile exists as the given row and column
-    private boolean tileAt(int row, int col) {
-        return (board[row][col] != null);
+    // Generator used to spawn tiles. Reseed it before reset() to replay a game.
+    public GameRandom getRandom() {
+        return rand;
+    }
+
+    // The game being played, already reflecting any slide that is still being animated
+    public GridBoard getGrid() {
+        return grid;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    // The game packed as a BitBoard. Only valid while grid.fitsBitBoard() (a 4x4 game with no tile above 32768).
+    public long getState() {
+        return grid.toBitBoard();
     }
 
-    // Get tile index from value.
-    // Eg: Input of 16 returns 3, 32 returns 4, etc.
-    private int getTileIndex(int tileValue) {
-        return (int)(Math.log(tileValue) / Math.log(2.0)) - 1;
+    // Points earned by merges so far this game
+    public long getScore() {
+        return grid.getScore();
+    }
+
+    public Bitmap getBoardImage() {
+        return boardImage;
+    }
+
+    public Rect getBoardSpace() {
+        return boardSpace;
+    }
+
+    public TileImageCache getTileImages() {
+        return tileImages;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    // Give every tile the latest image for its value
+    private void refreshTileImages() {
+        tileImagesVersion = tileImages.getVersion();
+        for(int i = 0; i < tilesOnBoard.size(); i++) {
+            Tile t = tilesOnBoard.get(i);
+            t.setImage(tileImages.get(t.getExponent()));
+        }
+    }
+
+    // The board image in the file has 4x4 cells; for other sizes, draw size x size of its cells over them
+    private Bitmap boardImageFor(Bitmap image, int size) {
+        if(size == BitBoard.ROWS) return image;
+
+        int width = image.getWidth();
+        float border = width * BORDER_SIZE / (float)(2 * BORDER_SIZE + BitBoard.ROWS * TILE_IMG_LENGTH);
+        float cell = (width - 2 * border) / BitBoard.ROWS;
+        float newCell = (width - 2 * border) / size;
+
+        Bitmap composed = Bitmap.createBitmap(width, image.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(composed);
+        canvas.drawBitmap(image, 0, 0, null);
+
+        Rect cellImage = new Rect((int) border, (int) border, (int)(border + cell), (int)(border + cell));
+        Rect cellSpace = new Rect();
+        for(int i = 0; i < size; i++)
+            for(int j = 0; j < size; j++) {
+                cellSpace.set((int)(border + j * newCell), (int)(border + i * newCell),
+                        (int)(border + (j + 1) * newCell), (int)(border + (i + 1) * newCell));
+                canvas.drawBitmap(image, cellImage, cellSpace, null);
+            }
+        return composed;
     }
 
     // Return the tile x pixel position given the column
     private int getTilePosX(int col) {
-        int tileSize = (int)(TILE_IMG_LENGTH * scaleFactor);
         return tilesX + (tileSize * col);
     }
 
     // Return the tile y pixel position given the row
     private int getTilePosY(int row) {
-        int tileSize = (int)(TILE_IMG_LENGTH * scaleFactor);
         return tilesY + (tileSize * row);
     }
 
+    // Empty the shared buffer used to build a row or column while sliding
+    private Tile[] clearLineBuffer() {
+        for(int i = 0; i < ROWS; i++)
+            lineBuffer[i] = null;
+        return lineBuffer;
+    }
+
     // Remove all tiles on board
     private void removeTiles() {
+        for(int i = 0; i < tilesOnBoard.size(); i++)
+            tilePool.release(tilesOnBoard.get(i));
         tilesOnBoard.clear();
-        board = new Tile[ROWS][ROWS];
+        timeline.clear();
+
+        for(int i = 0; i < ROWS; i++)
+            for(int j = 0; j < ROWS; j++)
+                board[i][j] = null;
+        grid.reset(null, 0);
     }
 
     // For debugging
@@ -539,7 +724,7 @@ public class Board {
         for(int i = 0; i < ROWS; i++) {
             for(int j = 0; j < ROWS; j++) {
                 if(board[i][j] != null) {
-                    System.out.print("[" + board[i][j].getValue() + "]");
+                    System.out.print("[" + GridBoard.valueOf(board[i][j].getExponent()) + "]");
                     nTiles++;
                 }
                 else
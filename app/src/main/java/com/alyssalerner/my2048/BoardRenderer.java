@@ -0,0 +1,112 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Draws the board on the render thread from the snapshots LogicThread publishes, without touching
+ * Board itself.
+ *
+ * Frames are drawn one tick behind the logic, so that there are always two snapshots to draw
+ * between: each tile is placed between where it was in the previous snapshot and where it is in
+ * the newest one, according to the frame's time. Animation therefore stays smooth whatever the
+ * display rate is compared to LogicThread.TICK_NANOS. Tiles that have just appeared are drawn
+ * where they are; tiles that have just merged away are no longer drawn. A hint is shown as a light
+ * bar along the edge of the board that the tiles should be moved towards.
+ */
+public class BoardRenderer {
+    private final SnapshotBuffer snapshots;
+    private final FrameStats stats;
+    private final Bitmap boardImage;
+    private final Rect boardSpace;
+    private final TileImageCache tileImages;
+    private final int tileSize;
+
+    private final BoardSnapshot previous;   // Our own copy, as the writer reuses the one we had
+    private BoardSnapshot current;          // Null until the first snapshot arrives
+    private float progress;                 // 0 draws previous, 1 draws current
+    private final Rect tileSpace = new Rect();
+    private final Paint hintPaint = new Paint();
+
+    public BoardRenderer(Board board, SnapshotBuffer snapshots, FrameStats stats) {
+        this.snapshots = snapshots;
+        this.stats = stats;
+        boardImage = board.getBoardImage();
+        boardSpace = board.getBoardSpace();
+        tileImages = board.getTileImages();
+        tileSize = board.getTileSize();
+        previous = new BoardSnapshot(GridBoard.MAX_SIZE * GridBoard.MAX_SIZE);
+        hintPaint.setColor(Color.argb(110, 255, 255, 255));
+    }
+
+    // Pick up the newest snapshot and work out how far between the last two the frame at
+    // frameTime falls. Returns false if there is nothing to draw yet.
+    public boolean prepare(long frameTime) {
+        if(snapshots.hasNew()) {
+            if(current != null)
+                previous.copyFrom(current);
+            current = snapshots.acquire();
+            if(current.getInputTime() >= 0)
+                stats.inputApplied(current.getInputTime());
+        }
+        if(current == null) return false;
+
+        long span = current.getTime() - previous.getTime();
+        long shown = frameTime - LogicThread.TICK_NANOS;
+        if(previous.getTime() < 0 || span <= 0 || shown >= current.getTime())
+            progress = 1;
+        else
+            progress = Math.max(0, (float) (shown - previous.getTime()) / span);
+        return true;
+    }
+
+    public void draw(Canvas canvas) {
+        canvas.drawBitmap(boardImage, null, boardSpace, null);
+
+        for(int i = 0; i < current.getTileCount(); i++) {
+            int x = current.getX(i);
+            int y = current.getY(i);
+            if(progress < 1) {
+                int j = previous.indexOf(current.getId(i), i);
+                if(j >= 0) {
+                    x = previous.getX(j) + Math.round((x - previous.getX(j)) * progress);
+                    y = previous.getY(j) + Math.round((y - previous.getY(j)) * progress);
+                }
+            }
+            drawTile(canvas, tileImages.get(current.getExponent(i)), x, y);
+        }
+
+        if(current.getHint() != HintService.NO_HINT)
+            drawHint(canvas, current.getHint());
+    }
+
+    // True while there is motion left to draw
+    public boolean isAnimating() {
+        return current != null && (current.isAnimating() || progress < 1);
+    }
+
+    private void drawHint(Canvas canvas, int direction) {
+        int bar = Math.max(1, tileSize / 8);
+        Rect b = boardSpace;
+        switch(direction) {
+            case BitBoard.RIGHT: tileSpace.set(b.right - bar, b.top, b.right, b.bottom); break;
+            case BitBoard.LEFT:  tileSpace.set(b.left, b.top, b.left + bar, b.bottom);   break;
+            case BitBoard.UP:    tileSpace.set(b.left, b.top, b.right, b.top + bar);     break;
+            default:             tileSpace.set(b.left, b.bottom - bar, b.right, b.bottom); break;
+        }
+        canvas.drawRect(tileSpace, hintPaint);
+    }
+
+    private void drawTile(Canvas canvas, Bitmap image, int x, int y) {
+        // Images from TileImageCache are already the right size, so they are copied without scaling
+        if(image.getWidth() == tileSize && image.getHeight() == tileSize)
+            canvas.drawBitmap(image, x, y, null);
+        else {
+            tileSpace.set(x, y, x + tileSize, y + tileSize);
+            canvas.drawBitmap(image, null, tileSpace, null);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Where every tile was at one logic tick: what LogicThread hands to the render thread.
+ *
+ * Snapshots are reused rather than allocated (see SnapshotBuffer), so they are filled in with
+ * clear() and add(). Tiles keep their id for as long as they are on the board, which lets the
+ * renderer match a tile between two snapshots and draw it in between.
+ */
+public class BoardSnapshot {
+    private final int[] ids;
+    private final int[] xPos;
+    private final int[] yPos;
+    private final int[] exponents;
+    private int tileCount;
+    private long time = -1;         // Tick time, on the System.nanoTime() clock; -1 until filled in
+    private boolean animating;      // True if tiles were still sliding or merging at this tick
+    private long inputTime = -1;    // Earliest input whose result first shows in this snapshot, or -1
+    private int hint = HintService.NO_HINT;     // Suggested direction to show, as a BitBoard direction code
+
+    // capacity is the most tiles that can be on the board
+    public BoardSnapshot(int capacity) {
+        ids = new int[capacity];
+        xPos = new int[capacity];
+        yPos = new int[capacity];
+        exponents = new int[capacity];
+    }
+
+    // Start a new snapshot with no tiles
+    public void clear(long time, boolean animating) {
+        this.time = time;
+        this.animating = animating;
+        tileCount = 0;
+        inputTime = -1;
+        hint = HintService.NO_HINT;
+    }
+
+    public void add(int id, int x, int y, int exponent) {
+        ids[tileCount] = id;
+        xPos[tileCount] = x;
+        yPos[tileCount] = y;
+        exponents[tileCount] = exponent;
+        tileCount++;
+    }
+
+    public void copyFrom(BoardSnapshot other) {
+        tileCount = other.tileCount;
+        time = other.time;
+        animating = other.animating;
+        inputTime = other.inputTime;
+        hint = other.hint;
+        System.arraycopy(other.ids, 0, ids, 0, tileCount);
+        System.arraycopy(other.xPos, 0, xPos, 0, tileCount);
+        System.arraycopy(other.yPos, 0, yPos, 0, tileCount);
+        System.arraycopy(other.exponents, 0, exponents, 0, tileCount);
+    }
+
+    // Index of the tile with the given id, or -1. Tiles mostly keep their order between ticks, so
+    // the search starts at index start.
+    public int indexOf(int id, int start) {
+        for(int i = 0; i < tileCount; i++) {
+            int j = (start + i) % tileCount;
+            if(ids[j] == id) return j;
+        }
+        return -1;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public int getX(int i) {
+        return xPos[i];
+    }
+
+    public int getY(int i) {
+        return yPos[i];
+    }
+
+    public int getExponent(int i) {
+        return exponents[i];
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isAnimating() {
+        return animating;
+    }
+
+    public long getInputTime() {
+        return inputTime;
+    }
+
+    public void setInputTime(long inputTime) {
+        this.inputTime = inputTime;
+    }
+
+    public int getHint() {
+        return hint;
+    }
+
+    public void setHint(int hint) {
+        this.hint = hint;
+    }
+}
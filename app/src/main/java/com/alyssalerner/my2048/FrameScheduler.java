@@ -0,0 +1,123 @@
+package com.alyssalerner.my2048;
+
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Paces GameThread. While nothing on the board is moving the thread sleeps until requestFrames()
+ * is called (on input, reset, or a new surface). While frames are wanted, each frame is released on
+ * the display's vsync and stamped with its vsync time, so animation can be interpolated by time.
+ *
+ * Devices older than Jelly Bean have no Choreographer, so frames are paced by sleeping instead.
+ */
+public class FrameScheduler {
+    private static final long FALLBACK_FRAME_NANOS = 1000000000L / 60;
+
+    private final Object lock = new Object();
+    private final VsyncSource vsync;   // Null when vsync isn't available
+
+    // All guarded by lock
+    private boolean framesWanted;       // False while the board is static
+    private boolean requested;          // requestFrames() was called after the last frame was handed out
+    private boolean stopped;
+    private long vsyncTime;             // Time of the most recent vsync
+    private long lastFrameTime;         // Time of the last frame handed to the game thread
+    private boolean callbackPosted;     // A vsync callback is pending with Choreographer
+
+    // Must be created on the UI thread
+    public FrameScheduler() {
+        vsync = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)? new VsyncSource() : null;
+    }
+
+    // Wake the game thread and keep producing frames until idle() is called. Can be called from any thread.
+    public void requestFrames() {
+        synchronized(lock) {
+            framesWanted = true;
+            requested = true;
+            lock.notifyAll();
+        }
+    }
+
+    // Stop producing frames until the next requestFrames(). Ignored if frames were requested while
+    // the last frame was being drawn, so that input arriving at that moment isn't lost.
+    public void idle() {
+        synchronized(lock) {
+            if(!requested)
+                framesWanted = false;
+        }
+    }
+
+    // Allow frames to be produced again after stop()
+    public void start() {
+        synchronized(lock) {
+            stopped = false;
+        }
+    }
+
+    // Release the game thread waiting in awaitFrame()
+    public void stop() {
+        synchronized(lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+    }
+
+    // Block until the next frame is due and return its time (on the System.nanoTime() clock).
+    // Sleeps indefinitely while idle. Returns -1 once stopped.
+    public long awaitFrame() throws InterruptedException {
+        synchronized(lock) {
+            while(!framesWanted && !stopped)
+                lock.wait();
+            if(stopped) return -1;
+
+            if(vsync != null) {
+                while(vsyncTime == lastFrameTime && !stopped) {
+                    if(!callbackPosted) {
+                        callbackPosted = true;
+                        vsync.post();
+                    }
+                    lock.wait();
+                }
+                if(stopped) return -1;
+                requested = false;
+                lastFrameTime = vsyncTime;
+                return lastFrameTime;
+            }
+        }
+
+        // No vsync: sleep out the rest of the frame period
+        long now = System.nanoTime();
+        long next = lastFrameTime + FALLBACK_FRAME_NANOS;
+        if(next > now) {
+            Thread.sleep((next - now) / 1000000, (int) ((next - now) % 1000000));
+            now = next;
+        }
+        synchronized(lock) {
+            requested = false;
+            lastFrameTime = now;
+        }
+        return now;
+    }
+
+    private void onVsync(long frameTimeNanos) {
+        synchronized(lock) {
+            callbackPosted = false;
+            vsyncTime = frameTimeNanos;
+            lock.notifyAll();
+        }
+    }
+
+    // Only loaded on Jelly Bean and later, where Choreographer exists
+    private class VsyncSource implements Choreographer.FrameCallback {
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onVsync(frameTimeNanos);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.alyssalerner.my2048;
+
+import android.os.Debug;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Timings of the game loop, each kept in a Histogram: how long GameThread waited for the canvas
+ * and spent drawing, the time between frames, how long each LogicThread tick took, and the time
+ * from an input event to the first frame posted with its result. Optionally also the objects
+ * allocated per frame and per tick.
+ *
+ * Recording costs a few System.nanoTime() calls per frame and never allocates, so it is always on.
+ * Allocation counting slows down the whole VM (see Debug.startAllocCounting), so it is only done
+ * when asked for. Each histogram is written by one thread: UPDATE and TICK_ALLOCATIONS by the logic
+ * thread, the rest by the render thread. They can be read on the render thread (StatsOverlay, which
+ * may see a tick half recorded) or exactly once both threads have stopped (writeTo).
+ */
+public class FrameStats {
+    public static final int LOCK_WAIT = 0;
+    public static final int UPDATE = 1;
+    public static final int DRAW = 2;
+    public static final int FRAME_INTERVAL = 3;
+    public static final int INPUT_LATENCY = 4;
+    public static final int ALLOCATIONS = 5;
+    public static final int TICK_ALLOCATIONS = 6;
+    public static final String[] NAMES = {
+            "lock_canvas_ns", "update_ns", "draw_ns", "frame_interval_ns", "input_latency_ns", "allocations_per_frame",
+            "allocations_per_tick"
+    };
+    private static final double[] EXPORTED_PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    private final Histogram[] histograms = new Histogram[NAMES.length];
+    private final boolean countAllocations;
+    private long lastFrameTime = -1;    // -1 after an idle spell, so the gap isn't counted as a frame
+    private long inputTime = -1;        // Earliest input applied since the last frame was posted
+    private int allocationsAtStart;
+    private long tickStart;             // Logic thread only, like the two below
+    private int tickAllocationsAtStart;
+
+    public FrameStats(boolean countAllocations) {
+        this.countAllocations = countAllocations;
+        for(int i = 0; i < histograms.length; i++)
+            histograms[i] = new Histogram();
+    }
+
+    // Called by the render thread before its first frame and after its last one
+    public void begin() {
+        lastFrameTime = -1;
+        inputTime = -1;
+        if(countAllocations) Debug.startAllocCounting();
+    }
+
+    public void end() {
+        if(countAllocations) Debug.stopAllocCounting();
+    }
+
+    // A frame stamped frameTime is starting
+    public void frameStarted(long frameTime) {
+        if(lastFrameTime >= 0)
+            histograms[FRAME_INTERVAL].record(frameTime - lastFrameTime);
+        lastFrameTime = frameTime;
+        if(countAllocations)
+            allocationsAtStart = Debug.getThreadAllocCount();
+    }
+
+    public void record(int metric, long nanos) {
+        histograms[metric].record(nanos);
+    }
+
+    // The board changed in response to an input event that happened at eventTime (System.nanoTime clock)
+    public void inputApplied(long eventTime) {
+        if(inputTime < 0 || eventTime < inputTime)
+            inputTime = eventTime;
+    }
+
+    // The frame was handed to the display at postTime
+    public void framePosted(long postTime) {
+        if(inputTime >= 0) {
+            histograms[INPUT_LATENCY].record(postTime - inputTime);
+            inputTime = -1;
+        }
+        if(countAllocations)
+            histograms[ALLOCATIONS].record(Debug.getThreadAllocCount() - allocationsAtStart);
+    }
+
+    // The render thread is going to sleep until something changes
+    public void idle() {
+        lastFrameTime = -1;
+    }
+
+    // Called by the logic thread around each tick
+    public void tickStarted() {
+        tickStart = System.nanoTime();
+        if(countAllocations)
+            tickAllocationsAtStart = Debug.getThreadAllocCount();
+    }
+
+    public void tickFinished() {
+        histograms[UPDATE].record(System.nanoTime() - tickStart);
+        if(countAllocations)
+            histograms[TICK_ALLOCATIONS].record(Debug.getThreadAllocCount() - tickAllocationsAtStart);
+    }
+
+    public Histogram get(int metric) {
+        return histograms[metric];
+    }
+
+    public long getFrameCount() {
+        return histograms[DRAW].getCount();
+    }
+
+    public void reset() {
+        for(int i = 0; i < histograms.length; i++)
+            histograms[i].reset();
+    }
+
+    // Write a summary line per metric, then every non-empty bucket, as CSV for analysis elsewhere
+    public void writeTo(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            out.print("metric,count,mean,min");
+            for(int p = 0; p < EXPORTED_PERCENTILES.length; p++)
+                out.print("," + PERCENTILE_NAMES[p]);
+            out.println(",max");
+            for(int i = 0; i < histograms.length; i++) {
+                Histogram h = histograms[i];
+                out.print(NAMES[i] + "," + h.getCount() + "," + h.getMean() + "," + h.getMin());
+                for(int p = 0; p < EXPORTED_PERCENTILES.length; p++)
+                    out.print("," + h.getPercentile(EXPORTED_PERCENTILES[p]));
+                out.println("," + h.getMax());
+            }
+
+            out.println();
+            out.println("metric,bucket_low,count");
+            for(int i = 0; i < histograms.length; i++) {
+                Histogram h = histograms[i];
+                for(int b = 0; b < h.getBuckets(); b++)
+                    if(h.getCountInBucket(b) > 0)
+                        out.println(NAMES[i] + "," + h.getBucketLow(b) + "," + h.getCountInBucket(b));
+            }
+        } finally {
+            out.close();
+        }
+        if(out.checkError())
+            throw new IOException("Couldn't write " + file);
+    }
+}
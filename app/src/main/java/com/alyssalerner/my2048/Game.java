@@ -4,10 +4,13 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.WindowManager;
 
-
-import java.util.ArrayList;
+import java.io.File;
 
 public class Game extends AppCompatActivity {
+    public static final String EXTRA_BOARD_SIZE = "boardSize";    // Rows and columns of the board, 3 to 8 (4 if not given)
+    public static final String EXTRA_SHOW_STATS = "showStats";    // Draw frame timings over the game (see FrameStats)
+    public static final String TABLES_DIR = "tables";             // Directory under the app's files for RowTables
+
     GamePanel gamePanel;
 
     @Override
@@ -15,16 +18,32 @@ public class Game extends AppCompatActivity {
         super.onCreate(inState);
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
 
-        ArrayList<SerializableTile> savedTiles = null;
+        // Map the engine's tables while the window is set up; only the first launch has to build and
+        // write them. Anything that plays the game before they are ready waits in RowTables.get().
+        RowTables.setDirectory(new File(getFilesDir(), TABLES_DIR));
+        loadRowTables();
+
+        byte[] savedState = null;
 
-        if(inState != null && inState.getSerializable("tiles") != null) {
-            savedTiles = (ArrayList<SerializableTile>) inState.getSerializable("tiles");
+        if(inState != null) {
+            savedState = inState.getByteArray("state");
         }
 
-        gamePanel = new GamePanel(this, savedTiles);
+        int boardSize = getIntent().getIntExtra(EXTRA_BOARD_SIZE, BitBoard.ROWS);
+        boolean showStats = getIntent().getBooleanExtra(EXTRA_SHOW_STATS, false);
+        gamePanel = new GamePanel(this, savedState, boardSize, showStats);
         setContentView(gamePanel);
     }
 
+    private static void loadRowTables() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RowTables.get();
+            }
+        }, "row-tables").start();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -37,17 +56,21 @@ public class Game extends AppCompatActivity {
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        // Generate a list of serializable tiles from tiles on the board
-        ArrayList<SerializableTile> savedTiles = new ArrayList<SerializableTile>();
-        for(Tile tile : gamePanel.getBoard().getTilesOnBoard()) {
-            savedTiles.add(new SerializableTile(tile.getValue(), tile.getRow(), tile.getCol()));
+        // The whole game fits in about 20 bytes (see StateCodec)
+        byte[] state = gamePanel.saveState();
+        if(state != null) {
+            outState.putByteArray("state", state);
         }
-
-        outState.putSerializable("tiles", savedTiles);
     }
 
     @Override
     public void onStop() {
         super.onStop();
     }
+
+    @Override
+    protected void onDestroy() {
+        gamePanel.release();
+        super.onDestroy();
+    }
 }
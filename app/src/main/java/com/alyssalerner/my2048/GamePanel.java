@@ -11,32 +11,78 @@ import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Created by Alyssa on 2016-02-18.
  */
 public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
     public final float BOARD_RATIO = 0.90F;  // percentage of the screen width/height that the board takes up
-    public final int N_TILES = 11;          // Number of tiles starting with 2, 4, 8, 16, etc.
+    public final int N_TILES = 11;          // Number of tile images in the file, starting with 2, 4, 8, 16, etc.
     public final float BOARD_IMG_SIZE = 416;   // width and height of board image in the file
     public final int TILE_IMG_LENGTH = 100; // The height of each tile image in file
+    public static final String JOURNAL_DIR = "journals";   // Directory under the app's files where games are recorded
+    public final int INPUT_QUEUE_SIZE = 256;        // Ints that can wait for the game thread before new commands are dropped
+    public final String STATS_DIR = "stats";        // Directory under the app's files where frame timings are exported
+    public final float STATS_TEXT_SIZE = 14;        // Overlay text size, in board image pixels
+    public final long HINT_BUDGET_NANOS = 300000000L;  // Longest a hint may take, from the tap to the answer
+    public final String SCORES_DIR = "scores";      // Directory under the app's files with a score log per board size
+
+    // Commands sent from the UI thread to the game thread. Moves are Board.Direction ordinals.
+    private static final int COMMAND_UNDO = 8;
+    private static final int COMMAND_REDO = 9;
+    private static final int COMMAND_RESET = 10;
+    private static final int COMMAND_HINT = 11;
+    private static final int NO_COMMAND = -1;
+    private static final int COMMAND_INTS = 3;  // Each command is queued with the time of its input event, split in two ints
+    private static final Board.Direction[] DIRECTIONS = Board.Direction.values();
 
     private GestureDetectorCompat gestureDetector;
     private Board board;
     private float scaleFactor;
-    private boolean resetNextTouch = false; // True if player has lost, and next touch should result in a board reset
-    GameThread thread;
+    private volatile boolean resetNextTouch = false;    // True if player has lost, and next touch should result in a board reset
+    GameThread thread;          // Draws the game (the render thread)
+    volatile LogicThread logic; // Plays the game, and is the only thread that touches board once the surface exists
+    FrameScheduler scheduler;
+    SnapshotBuffer snapshots;   // Tile positions from the logic thread to the render thread
+    BoardRenderer renderer;
+    JournalWriter journal;
+    SpscIntQueue commands;      // Input from the UI thread, applied by the game thread (the only one that touches board)
+    FrameStats stats;           // Timings of the game loop, exported whenever the surface goes away
+    StatsOverlay statsOverlay;  // Null unless the timings are shown on screen
+    volatile HintService hints; // Made on the first hint by the logic thread, then kept until release()
+    Leaderboard scores;         // Finished games of this board size; only touched on the scores thread, null until opened there
+    ExecutorService scoresThread;   // Opens, records to, syncs and closes scores in turn, so no file work happens on the UI or logic thread
+    TileImageCache tileImages;  // Kept across surfaces, so tiles are only scaled again if the size changes
     Context context;
-    private ArrayList<SerializableTile> savedTiles; // Keeps previous tile state for when screen is rotated, etc.
+    private byte[] savedState;  // Keeps previous game state for when screen is rotated, etc.
+    private int boardSize;      // Rows and columns of a new game
+    private boolean showStats;
+    private final int[] commandBuffer = new int[COMMAND_INTS];     // Only used on the UI thread
+    private boolean snapshotDropped;    // The last snapshot published was never drawn (logic thread only)
+    private boolean showHint;           // A hint was asked for the current position (logic thread only)
+
+    public GamePanel(Context context, byte[] savedState) {
+        this(context, savedState, BitBoard.ROWS, false);
+    }
 
-    public GamePanel(Context context, ArrayList<SerializableTile> savedTiles) {
+    // showStats draws frame timings over the game and also counts allocations, which slows it down a little
+    public GamePanel(Context context, byte[] savedState, int boardSize, boolean showStats) {
         super(context);
         this.context = context;
         getHolder().addCallback(this);
         setFocusable(true);
         gestureDetector = new GestureDetectorCompat(context, new FlingListener());
-        this.savedTiles = savedTiles;
+        scheduler = new FrameScheduler();
+        commands = new SpscIntQueue(INPUT_QUEUE_SIZE);
+        stats = new FrameStats(showStats);
+        this.savedState = savedState;
+        this.boardSize = boardSize;
+        this.showStats = showStats;
     }
 
     @Override
@@ -49,21 +95,40 @@ public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
         int boardX = (int)((getWidth() / 2.0) - (boardWidth / 2.0));
         int boardY = (int)((getHeight() / 2.0) - (boardWidth / 2.0));
 
-        // For unknown reason, BitmapFactory returns a tile image that is 3x larger than it really is, so scale the result to compensate
-        Bitmap tileBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.tiles);
-        Bitmap scaledTileBitmap = Bitmap.createScaledBitmap(tileBitmap, TILE_IMG_LENGTH, TILE_IMG_LENGTH * N_TILES, false);
+        if(tileImages == null) {
+            // For unknown reason, BitmapFactory returns a tile image that is 3x larger than it really is, so scale the result to compensate
+            Bitmap tileBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.tiles);
+            Bitmap scaledTileBitmap = Bitmap.createScaledBitmap(tileBitmap, TILE_IMG_LENGTH, TILE_IMG_LENGTH * N_TILES, false);
+            tileImages = new TileImageCache(scaledTileBitmap, TileImageCache.defaultMaxBytes());
+        }
 
         if(board == null) {
             board = new Board(
                     BitmapFactory.decodeResource(getResources(), R.drawable.board),
-                    scaledTileBitmap,
+                    tileImages,
                     new Rect(boardX, boardY, boardX + boardWidth, boardY + boardWidth),
                     scaleFactor,
-                    savedTiles
+                    boardSize,
+                    savedState,
+                    new GameRandom()
             );
         }
+        startJournal();
+        openScores();
+        if(showStats) {
+            statsOverlay = new StatsOverlay(stats, STATS_TEXT_SIZE * scaleFactor);
+        }
 
-        thread = new GameThread(getHolder(), this);
+        snapshots = new SnapshotBuffer(board.ROWS * board.ROWS);
+        snapshotDropped = false;
+        renderer = new BoardRenderer(board, snapshots, stats);
+
+        // The logic thread publishes the first snapshot straight away, which wakes the render thread
+        logic = new LogicThread(this);
+        logic.setRunning(true);
+        logic.start();
+
+        thread = new GameThread(getHolder(), this, scheduler, stats);
         thread.setRunning(true);
         thread.start();
     }
@@ -78,42 +143,300 @@ public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
         boolean retry = true;
         int counter = 0;    // Ensure don't enter an infinite loop
 
-        // Try to destroy the thread until successful (can take a few attempts)
+        // Try to destroy the threads until successful (can take a few attempts)
         while(retry && counter < 1000) {
             counter++;
             try {
                 thread.setRunning(false);
                 thread.join();
+                logic.setRunning(false);
+                logic.join();
                 retry = false;
                 thread = null;  // So garbage collector can pick up object
+                logic = null;
             } catch(InterruptedException e) { e.printStackTrace();}
         }
+        // Finish a move that was still sliding, so that its new tile ends this journal and the next
+        // one starts from a position at rest
+        board.fastForward(System.nanoTime());
+        stopJournal();
+        exportStats();
+        scoresThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(scores == null) return;
+                try {
+                    scores.sync();
+                } catch(IOException e) { e.printStackTrace(); }
+            }
+        });
+    }
+
+    // Load the score log on a thread of its own, since it streams every game played so far through
+    // its index. Games that end before it is ready are queued behind it.
+    private void openScores() {
+        if(scoresThread != null) return;
+        scoresThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "scores");
+            }
+        });
+        File dir = new File(context.getFilesDir(), SCORES_DIR);
+        final File file = new File(dir, "scores-" + board.ROWS + "x" + board.ROWS + ".log");
+        scoresThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    file.getParentFile().mkdirs();
+                    scores = Leaderboard.open(file, Leaderboard.DEFAULT_CAPACITY);
+                } catch(IOException e) { e.printStackTrace(); }
+            }
+        });
+    }
+
+    // Add the lost game to the score log before it is replaced by a new one. The game is read here on
+    // the logic thread and written on the scores thread. Its moves are only those made since the game
+    // was last restored (see Board.getMoveCount), so a game that outlived its activity logs fewer.
+    private void recordScore() {
+        final long score = board.getScore();
+        final int maxExponent = board.getGrid().getMaxExponent();
+        final int moves = board.getMoveCount();
+        scoresThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(scores == null) return;
+                try {
+                    scores.record(score, maxExponent, moves);
+                    scores.flush();
+                } catch(IOException e) { e.printStackTrace(); }
+            }
+        });
+    }
+
+    // Record the game from its current position into a new journal file. The board is at rest here
+    // (surfaceDestroyed finishes any move), so the journal's first move is one made after it starts.
+    // Journals hold BitBoards, so games of other sizes aren't recorded.
+    private void startJournal() {
+        if(!board.getGrid().fitsBitBoard()) return;
+
+        File dir = new File(context.getFilesDir(), JOURNAL_DIR);
+        dir.mkdirs();
+        try {
+            journal = new JournalWriter(new File(dir, "game-" + System.currentTimeMillis() + ".journal"), board.getState(), board.getScore());
+            board.setJournal(journal);
+        } catch(IOException e) { e.printStackTrace(); }
+    }
+
+    // Write out and close the journal (the game thread has already stopped)
+    private void stopJournal() {
+        if(journal == null) return;
+        board.setJournal(null);
+        try {
+            journal.close();
+        } catch(IOException e) { e.printStackTrace(); }
+        journal = null;
+    }
+
+    // Stop background work for good; called when the activity is destroyed
+    public void release() {
+        HintService hints = this.hints;
+        if(hints != null) {
+            hints.shutdown();
+        }
+        if(scoresThread != null) {
+            scoresThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if(scores == null) return;
+                    try {
+                        scores.close();
+                    } catch(IOException e) { e.printStackTrace(); }
+                    scores = null;
+                }
+            });
+            scoresThread.shutdown();
+        }
+    }
+
+    // Write the timings gathered while the surface was up to a new file and start afresh (the game thread has already stopped)
+    private void exportStats() {
+        if(stats.getFrameCount() == 0) return;
+
+        File dir = new File(context.getFilesDir(), STATS_DIR);
+        dir.mkdirs();
+        try {
+            stats.writeTo(new File(dir, "frames-" + System.currentTimeMillis() + ".csv"));
+        } catch(IOException e) { e.printStackTrace(); }
+        stats.reset();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if(resetNextTouch) {
-            resetNextTouch = false;
-            board.reset();
+            sendCommand(COMMAND_RESET, eventNanos(event));
         }
         else gestureDetector.onTouchEvent(event);
         return true;
     }
 
-    public void update() {
-        board.update();
+    // Pass a command to the logic thread and wake it. Called on the UI thread; never waits for the logic thread.
+    // Commands sent while there is no surface are applied once the next one appears.
+    // inputTime is when the input that caused it happened, on the System.nanoTime() clock.
+    private void sendCommand(int command, long inputTime) {
+        commandBuffer[0] = command;
+        commandBuffer[1] = (int) (inputTime >>> 32);
+        commandBuffer[2] = (int) inputTime;
+        if(commands.offer(commandBuffer, COMMAND_INTS) && logic != null)
+            logic.wake();
+    }
+
+    // Time of a touch event in nanoseconds. Event times are SystemClock.uptimeMillis(), which runs on
+    // the same clock as System.nanoTime().
+    private static long eventNanos(MotionEvent event) {
+        return event.getEventTime() * 1000000L;
+    }
+
+    // One step of the game logic at tickTime, run by LogicThread: apply input, advance the animation,
+    // and publish where the tiles are now for the render thread
+    public void tick(long tickTime) {
+        stats.tickStarted();
+        long inputTime = applyCommands(tickTime);
+        board.update(tickTime);
         if(board.gameLost()) {
             resetNextTouch = true;
         }
+
+        // If the render thread never saw the last snapshot, its input only shows in this one
+        BoardSnapshot snapshot = snapshots.getBack();
+        if(snapshotDropped && snapshot.getInputTime() >= 0 && (inputTime < 0 || snapshot.getInputTime() < inputTime))
+            inputTime = snapshot.getInputTime();
+        board.writeSnapshot(snapshot);
+        snapshot.setInputTime(inputTime);
+        if(showHint && board.boardUnlocked() && board.getGrid().fitsBitBoard()) {
+            snapshot.setHint(hints.getCached(board.getState()));
+        }
+        snapshotDropped = snapshots.publish();
+        scheduler.requestFrames();
+        stats.tickFinished();
     }
 
-    @Override
-    public void draw(Canvas canvas) {
+    // True while the logic thread has to keep ticking: tiles are moving or input is waiting
+    public boolean needsTick() {
+        return !board.boardUnlocked() || !commands.isEmpty();
+    }
+
+    // Apply everything the UI thread has sent since the last tick. A command that arrives while a
+    // move is still animating finishes that move at once, so quick flings are never dropped.
+    // Returns the time of the earliest input that changed the board, or -1 if none did.
+    private long applyCommands(long tickTime) {
+        long firstInputTime = -1;
+        int command;
+        while((command = commands.poll(NO_COMMAND)) != NO_COMMAND) {
+            // The group was offered whole, so its time is already there
+            long inputTime = ((long) commands.poll(0) << 32) | (commands.poll(0) & 0xFFFFFFFFL);
+            board.fastForward(tickTime);
+
+            boolean changed;
+            switch(command) {
+                case COMMAND_UNDO:
+                    changed = board.undo();
+                    break;
+                case COMMAND_REDO:
+                    changed = board.redo();
+                    break;
+                case COMMAND_HINT:
+                    requestHint();
+                    changed = false;
+                    break;
+                case COMMAND_RESET:
+                    // Touches can queue several resets before the first one is applied
+                    changed = board.gameLost();
+                    if(changed) {
+                        recordScore();
+                        board.reset();
+                        resetNextTouch = false;
+                    }
+                    break;
+                default:
+                    changed = move(DIRECTIONS[command]);
+                    break;
+            }
+            if(changed) {
+                // The player has moved on, so a hint for the old position is no use
+                showHint = false;
+                if(hints != null) hints.cancel();
+                if(firstInputTime < 0 || inputTime < firstInputTime) firstInputTime = inputTime;
+            }
+        }
+        return firstInputTime;
+    }
+
+    // Show a hint for the current position once it is ready. Hints come from ExpectimaxPlayer, or
+    // from a trained NTupleNetwork if one has been put in the app's files; both play 4x4 BitBoards,
+    // so other boards get none.
+    private void requestHint() {
+        if(!board.getGrid().fitsBitBoard() || board.gameLost()) return;
+        HintService hints = this.hints;
+        if(hints == null) {
+            hints = new HintService(HINT_BUDGET_NANOS, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+            File weights = new File(context.getFilesDir(), NTupleNetwork.FILE_NAME);
+            if(weights.isFile()) {
+                try {
+                    hints.setNetwork(NTupleNetwork.map(weights));
+                } catch(IOException e) { e.printStackTrace(); }
+            }
+            this.hints = hints;
+        }
+        showHint = true;
+        hints.request(board.getState(), hintListener);
+    }
+
+    // Runs on the search thread: a cached hint is picked up on the next tick
+    private final HintService.Listener hintListener = new HintService.Listener() {
+        @Override
+        public void onHint(long board, int direction) {
+            LogicThread logic = GamePanel.this.logic;
+            if(logic != null) logic.wake();
+        }
+    };
+
+    // Make a move if it is legal. Returns false if it isn't.
+    private boolean move(Board.Direction direction) {
+        if(!board.canMoveInDirection(direction)) return false;
+        board.lock();
+
+        switch(direction) {
+            case RIGHT: board.slideRight(); break;
+            case LEFT:  board.slideLeft();  break;
+            case UP:    board.slideUp();    break;
+            case DOWN:  board.slideDown();  break;
+            default:    break;
+        }
+        return true;
+    }
+
+    // True while there is still motion to draw, so more frames are needed (render thread)
+    public boolean isAnimating() {
+        return renderer.isAnimating();
+    }
+
+    // Pick up the newest snapshot for the frame at frameTime. Returns false if there is nothing to draw yet (render thread).
+    public boolean prepareFrame(long frameTime) {
+        return renderer.prepare(frameTime);
+    }
+
+    // Draw the snapshot picked up by prepareFrame (render thread)
+    public void drawFrame(Canvas canvas) {
         if(canvas != null) {
 
             final int savedState = canvas.save();
-            board.draw(canvas);
+            renderer.draw(canvas);
             canvas.restoreToCount(savedState);
+
+            if(statsOverlay != null) {
+                statsOverlay.draw(canvas, 0, 0);
+            }
         }
     }
 
@@ -121,6 +444,13 @@ public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
         return board;
     }
 
+    // The game to restore if the activity is recreated: the last position the logic thread published,
+    // or the one this panel was given if it never made a board. Called on the UI thread.
+    public byte[] saveState() {
+        Board board = this.board;
+        return (board != null)? board.saveState() : savedState;
+    }
+
     class FlingListener extends GestureDetector.SimpleOnGestureListener {
 
         @Override
@@ -128,20 +458,34 @@ public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
             return false;
         }
 
+        // Double tap to undo the last move
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            sendCommand(COMMAND_UNDO, eventNanos(e));
+            return true;
+        }
+
+        // Single tap to show a hint for the next move
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            sendCommand(COMMAND_HINT, eventNanos(e));
+            return true;
+        }
+
+        // Long press to redo a move that was undone
+        @Override
+        public void onLongPress(MotionEvent e) {
+            // e is the touch down, but the press only counts from now
+            sendCommand(COMMAND_REDO, System.nanoTime());
+        }
+
+        // The move is queued even if tiles are still sliding; the game thread applies it once they are done
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
             Board.Direction direction = board.getDirection(velocityX, velocityY);
 
-            if(board.boardUnlocked() && board.canMoveInDirection(direction)) {
-                board.lock();
-
-                switch(direction) {
-                    case RIGHT: board.slideRight(); break;
-                    case LEFT:  board.slideLeft();  break;
-                    case UP:    board.slideUp();    break;
-                    case DOWN:  board.slideDown();  break;
-                    default:    break;
-                }
+            if(direction != Board.Direction.UNKNOWN) {
+                sendCommand(direction.ordinal(), eventNanos(e2));
             }
 
             return true;
@@ -7,60 +7,85 @@ import android.view.SurfaceHolder;
  * Created by Alyssa on 2016-02-19.
  */
 public class GameThread extends Thread {
-    private int FPS = 32;
     private SurfaceHolder surfaceHolder;
     private GamePanel gamePanel;
-    private boolean running;
+    private FrameScheduler scheduler;
+    private FrameStats stats;
+    private volatile boolean running;
     private static Canvas canvas;
-    long targetTime = (int)(1000.0 / FPS);   // Time per loop
 
-    public GameThread(SurfaceHolder sh, GamePanel gp) {
+    public GameThread(SurfaceHolder sh, GamePanel gp, FrameScheduler scheduler, FrameStats stats) {
         super();
         this.surfaceHolder = sh;
         this.gamePanel = gp;
+        this.scheduler = scheduler;
+        this.stats = stats;
     }
 
     @Override
     public void run() {
+        // Draw the board once as soon as the surface is ready
+        scheduler.requestFrames();
+        stats.begin();
 
-        long startTime = System.nanoTime();
         while(running) {
-            startTime = System.nanoTime();
+            // Sleeps until the next vsync, or for as long as nothing is moving
+            long frameTime;
+            try {
+                frameTime = scheduler.awaitFrame();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if(frameTime < 0 || !running) break;
+
             canvas = null;
+            stats.frameStarted(frameTime);
+
+            // The game logic runs on its own thread (see LogicThread); nothing is drawn until it has published a snapshot
+            if(!gamePanel.prepareFrame(frameTime)) {
+                scheduler.idle();
+                stats.idle();
+                continue;
+            }
 
             // Try locking canvas for pixel editing
             try {
+                long start = System.nanoTime();
                 canvas = this.surfaceHolder.lockCanvas();
+                long locked = System.nanoTime();
+                stats.record(FrameStats.LOCK_WAIT, locked - start);
 
-                // Each game loop, update and draw the game once.
-                synchronized (surfaceHolder) {
-                    this.gamePanel.draw(canvas);
-                    this.gamePanel.update();
-                }
+                // Each frame, draw the newest snapshot of the game as it should look at the frame's time
+                this.gamePanel.drawFrame(canvas);
+                stats.record(FrameStats.DRAW, System.nanoTime() - locked);
             } catch (Exception e) {
             } finally {
                 if (canvas != null) {
                     try {
                         surfaceHolder.unlockCanvasAndPost(canvas);
+                        stats.framePosted(System.nanoTime());
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 }
             }
 
-            // Decide how long to wait
-            long timeItTookToDraw = (System.nanoTime() - startTime) / 1000000;
-            long waitTime = targetTime - timeItTookToDraw;
-
-            // Wait
-            try {
-                this.sleep(waitTime);
-            } catch (Exception e) {
+            // Once everything has come to rest, stop drawing until something changes
+            if(!gamePanel.isAnimating()) {
+                scheduler.idle();
+                stats.idle();
             }
         }
+        stats.end();
     }
 
     public void setRunning(boolean isRunning) {
         running = isRunning;
+        if(isRunning) {
+            scheduler.start();
+        }
+        else {
+            scheduler.stop();
+        }
     }
 }
@@ -0,0 +1,80 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Runs the game logic (input, moves, animation, spawns) at a fixed rate, apart from drawing.
+ *
+ * Every tick is stamped exactly TICK_NANOS after the one before, so slides and merges advance the
+ * same way however long drawing takes. After each tick GamePanel publishes a BoardSnapshot for the
+ * render thread. Once everything is at rest the thread sleeps until wake() is called with new input.
+ */
+public class LogicThread extends Thread {
+    public static final long TICK_NANOS = 1000000000L / 120;
+    private static final int MAX_LATE_TICKS = 4;    // After a longer stall, skip ahead instead of catching up
+
+    private final GamePanel gamePanel;
+    private final Object lock = new Object();
+    private boolean woken;          // Guarded by lock: input arrived since the thread last went idle
+    private volatile boolean running;
+
+    public LogicThread(GamePanel gamePanel) {
+        super("game-logic");
+        this.gamePanel = gamePanel;
+    }
+
+    @Override
+    public void run() {
+        long tickTime = System.nanoTime();
+        try {
+            while(running) {
+                gamePanel.tick(tickTime);
+
+                if(!gamePanel.needsTick()) {
+                    awaitInput();
+                    tickTime = System.nanoTime();
+                    continue;
+                }
+
+                tickTime += TICK_NANOS;
+                long now = System.nanoTime();
+                if(now - tickTime > MAX_LATE_TICKS * TICK_NANOS)
+                    tickTime = now;
+                else
+                    sleepUntil(tickTime);
+            }
+        } catch(InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    // Run the next tick as soon as possible if the thread is idle. Can be called from any thread.
+    public void wake() {
+        synchronized(lock) {
+            woken = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void setRunning(boolean isRunning) {
+        synchronized(lock) {
+            running = isRunning;
+            lock.notifyAll();
+        }
+    }
+
+    private void awaitInput() throws InterruptedException {
+        synchronized(lock) {
+            while(!woken && running)
+                lock.wait();
+            woken = false;
+        }
+    }
+
+    // Input doesn't cut this short, so ticks stay evenly spaced; it is picked up on the next tick
+    private void sleepUntil(long time) throws InterruptedException {
+        synchronized(lock) {
+            long left;
+            while(running && (left = time - System.nanoTime()) > 0)
+                lock.wait(left / 1000000, (int) (left % 1000000));
+        }
+    }
+}
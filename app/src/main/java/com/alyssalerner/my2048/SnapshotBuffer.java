@@ -0,0 +1,57 @@
+package com.alyssalerner.my2048;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands BoardSnapshots from the logic thread to the render thread without either of them waiting.
+ *
+ * This is double buffering with a spare: the writer fills its back snapshot while the reader draws
+ * its front one, and the two meet only through a third, middle slot that each side swaps its own
+ * snapshot into with one atomic getAndSet. A snapshot is therefore never written while it is
+ * being read, the reader always gets the newest one, and a snapshot the reader was too slow to
+ * see is simply handed back to the writer. Only one thread may write and one may read.
+ */
+public final class SnapshotBuffer {
+    private static final int INDEX = 3;
+    private static final int FRESH = 4;     // Set while the middle snapshot hasn't been read
+
+    private final BoardSnapshot[] snapshots = new BoardSnapshot[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;       // Writer only
+    private int front = 2;      // Reader only
+    private boolean received;   // Reader only: something has been published
+
+    // capacity is the most tiles a snapshot can hold
+    public SnapshotBuffer(int capacity) {
+        for(int i = 0; i < snapshots.length; i++)
+            snapshots[i] = new BoardSnapshot(capacity);
+    }
+
+    // Writer only. The snapshot to fill in before the next publish().
+    public BoardSnapshot getBack() {
+        return snapshots[back];
+    }
+
+    // Writer only. Make the back snapshot the newest and take a new back one. Returns true if the
+    // snapshot it replaced was never read; that one becomes getBack(), still holding what it had.
+    public boolean publish() {
+        int old = middle.getAndSet(back | FRESH);
+        back = old & INDEX;
+        return (old & FRESH) != 0;
+    }
+
+    // Reader only. True if acquire() would return a newer snapshot than last time.
+    public boolean hasNew() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    // Reader only. The newest snapshot, or null if nothing has been published. It doesn't change
+    // until the next call.
+    public BoardSnapshot acquire() {
+        if(hasNew()) {
+            front = middle.getAndSet(front) & INDEX;
+            received = true;
+        }
+        return received? snapshots[front] : null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws the median and 99th percentile of each FrameStats metric in the corner of the screen.
+ *
+ * The text is rebuilt into fixed char arrays every REFRESH_FRAMES frames and drawn straight from
+ * them, so the overlay allocates nothing and can stay on while allocations are being counted.
+ * Times are shown in milliseconds; allocations as objects per frame and per logic tick.
+ */
+public class StatsOverlay {
+    private static final int REFRESH_FRAMES = 30;   // About twice a second while animating
+    private static final int LINE_LENGTH = 48;
+    private static final int[] METRICS = {
+            FrameStats.FRAME_INTERVAL, FrameStats.LOCK_WAIT, FrameStats.DRAW, FrameStats.UPDATE,
+            FrameStats.INPUT_LATENCY, FrameStats.ALLOCATIONS, FrameStats.TICK_ALLOCATIONS
+    };
+    private static final String[] LABELS = {"frame   ", "lock    ", "draw    ", "tick    ", "input   ", "alloc/f ", "alloc/t "};
+
+    private final FrameStats stats;
+    private final char[][] lines = new char[METRICS.length][LINE_LENGTH];
+    private final int[] lengths = new int[METRICS.length];
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final float textSize;
+    private int framesUntilRefresh;
+
+    public StatsOverlay(FrameStats stats, float textSize) {
+        this.stats = stats;
+        this.textSize = textSize;
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(textSize);
+        backgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+    }
+
+    // Draw the overlay with its top left corner at (x, y). Called on the render thread.
+    public void draw(Canvas canvas, float x, float y) {
+        if(--framesUntilRefresh <= 0) {
+            refresh();
+            framesUntilRefresh = REFRESH_FRAMES;
+        }
+
+        float lineHeight = textSize * 1.2f;
+        canvas.drawRect(x, y, x + textSize * LINE_LENGTH * 0.6f, y + lineHeight * (lines.length + 0.5f), backgroundPaint);
+        for(int i = 0; i < lines.length; i++)
+            canvas.drawText(lines[i], 0, lengths[i], x + textSize * 0.5f, y + lineHeight * (i + 1), textPaint);
+    }
+
+    private void refresh() {
+        for(int i = 0; i < METRICS.length; i++) {
+            Histogram h = stats.get(METRICS[i]);
+            char[] line = lines[i];
+            int at = append(line, 0, LABELS[i]);
+
+            if(h.getCount() == 0)
+                at = append(line, at, "-");
+            else if(METRICS[i] == FrameStats.ALLOCATIONS || METRICS[i] == FrameStats.TICK_ALLOCATIONS) {
+                at = append(line, at, "p50 ");
+                at = appendNumber(line, at, h.getPercentile(0.5));
+                at = append(line, at, "  max ");
+                at = appendNumber(line, at, h.getMax());
+            }
+            else {
+                at = append(line, at, "p50 ");
+                at = appendMillis(line, at, h.getPercentile(0.5));
+                at = append(line, at, "  p99 ");
+                at = appendMillis(line, at, h.getPercentile(0.99));
+                at = append(line, at, " ms");
+            }
+            lengths[i] = at;
+        }
+    }
+
+    // The helpers below write into line from position at and return the position after the text
+
+    private static int append(char[] line, int at, String text) {
+        int length = Math.min(text.length(), line.length - at);
+        text.getChars(0, length, line, at);
+        return at + length;
+    }
+
+    // Nanoseconds as milliseconds with two decimals
+    private static int appendMillis(char[] line, int at, long nanos) {
+        long hundredths = (nanos + 5000) / 10000;
+        at = appendNumber(line, at, hundredths / 100);
+        if(at + 3 > line.length) return at;
+        line[at++] = '.';
+        line[at++] = (char) ('0' + hundredths / 10 % 10);
+        line[at++] = (char) ('0' + hundredths % 10);
+        return at;
+    }
+
+    private static int appendNumber(char[] line, int at, long value) {
+        int digits = 1;
+        for(long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+        if(at + digits > line.length) return at;
+        for(int i = at + digits - 1; i >= at; i--) {
+            line[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + digits;
+    }
+}
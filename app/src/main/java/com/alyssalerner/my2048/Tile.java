@@ -10,10 +10,12 @@ import android.graphics.Rect;
  */
 public class Tile {
     public final int TILE_IMG_LENGTH = 100; // The height of each tile image in file
-    public final int TILE_SPEED = 40;    // Amount tile should move per frame
+    public final int TILE_SPEED = 1280;     // Pixels the tile moves per second (40 per frame at the old fixed 32 FPS)
     public static int size;   // Pixel width and height of tile
+    private static int nextId;  // Only the logic thread makes and resets tiles
 
-    private int value;  // The tile's value (2, 4, 8, ...)
+    private int id;         // Different for every tile put on the board, even when reused (see BoardSnapshot)
+    private int exponent;   // The tile's value as a power of two (1 = 2, 2 = 4, 3 = 8, ...)
     private int row;    // The tile's row
     private int col;    // The tile's column
     private Bitmap image;   // Image of the tile
@@ -22,17 +24,28 @@ public class Tile {
 
     private int goalXPos;   // Position the tile will eventually slide to
     private int goalYPos;
+    private int startXPos;  // Position the current slide started from
+    private int startYPos;
+    private long slideStartTime;    // Time the current slide started (on the System.nanoTime() clock)
+    private long slideDuration;     // Nanoseconds the current slide takes
     private boolean hasBeenMerged;  // True if this tile has already been merged with another on the current slide
     // For the purpose of knowing not to merge it again
 
     private boolean mergeAfterSlide;   /* True if this tile will merge with another to create a new tile after the current slide
                                           Note: Once set to true, it is expected that this tile will be removed from the board,
-                                          so it will never be set to false again */
+                                          so it will never be set to false again until the tile is reused */
     private boolean sliding;    // True when sliding is in process
     private Tile mergeTwin;     // Tile that this tile will merge with
+    private final Rect tileSpace = new Rect();  // Where tile will be placed, reused every frame
 
-    public Tile(int value, int row, int col, Bitmap image, int xPos, int yPos) {
-        this.value = value;
+    public Tile(int exponent, int row, int col, Bitmap image, int xPos, int yPos) {
+        reset(exponent, row, col, image, xPos, yPos);
+    }
+
+    // Set the tile up as if it had just been constructed, so that it can be reused (see TilePool)
+    public void reset(int exponent, int row, int col, Bitmap image, int xPos, int yPos) {
+        this.id = nextId++;
+        this.exponent = exponent;
         this.row = row;
         this.col = col;
         this.image = image;
@@ -45,6 +58,11 @@ public class Tile {
         mergeAfterSlide = false;
         sliding = false;
         hasBeenMerged = false;
+        mergeTwin = null;
+    }
+
+    public int getId() {
+        return id;
     }
 
     public int getRow() {
@@ -55,8 +73,8 @@ public class Tile {
         return col;
     }
 
-    public int getValue() {
-        return value;
+    public int getExponent() {
+        return exponent;
     }
 
     public int getXPos() {
@@ -110,6 +128,10 @@ public class Tile {
         return mergeTwin;
     }
 
+    public void setImage(Bitmap image) {
+        this.image = image;
+    }
+
     public void setRowCol(int row, int col) {
         this.row = row;
         this.col = col;
@@ -120,44 +142,58 @@ public class Tile {
         this.goalYPos = goalYPos;
     }
 
-    public void update() {
-        // If tile is close enough to the goal position, place it at the goal position
-        if ((goalXPos != xPos && (Math.abs(goalXPos - xPos)) < TILE_SPEED) ||
-                (goalYPos != yPos && (Math.abs(goalYPos - yPos)) < TILE_SPEED)) {
+    // Move the tile to where it should be at the given time (on the System.nanoTime() clock)
+    public void update(long frameTime) {
+        if(!sliding) return;
+
+        long elapsed = frameTime - slideStartTime;
+
+        // If sliding motion complete, place the tile at the goal position
+        if(elapsed >= slideDuration) {
             sliding = false;
             xPos = goalXPos;
             yPos = goalYPos;
         }
 
-
-        // Perform a slide increment
-        else if (goalXPos > xPos) xPos += TILE_SPEED;
-        else if (goalXPos < xPos) xPos -= TILE_SPEED;
-        else if (goalYPos > yPos) yPos += TILE_SPEED;
-        else if (goalYPos < yPos) yPos -= TILE_SPEED;
-
-            // If sliding motion complete, set sliding to false
-        else if (sliding) {
-            sliding = false;
+        // Otherwise interpolate, so the speed doesn't depend on the frame rate
+        else if(elapsed > 0) {
+            float progress = (float) elapsed / slideDuration;
+            xPos = startXPos + Math.round((goalXPos - startXPos) * progress);
+            yPos = startYPos + Math.round((goalYPos - startYPos) * progress);
         }
     }
 
     public void draw(Canvas canvas) {
-
-        Rect tileSpace = new Rect(xPos, yPos, xPos + size, yPos + size);    // Where tile will be placed
-
         try {
-            canvas.drawBitmap(image, null, tileSpace, null);
+            // Images from TileImageCache are already the right size, so they are copied without scaling
+            if(image.getWidth() == size && image.getHeight() == size)
+                canvas.drawBitmap(image, xPos, yPos, null);
+            else {
+                tileSpace.set(xPos, yPos, xPos + size, yPos + size);
+                canvas.drawBitmap(image, null, tileSpace, null);
+            }
         } catch (ArrayIndexOutOfBoundsException e) {
             e.printStackTrace();
         }
     }
 
-    // Begin the slide animation on this tile to the goal row and column
+    // Jump straight to the end of the current slide
+    public void finishSlide() {
+        if(!sliding) return;
+        sliding = false;
+        xPos = goalXPos;
+        yPos = goalYPos;
+    }
+
+    // Begin the slide animation on this tile to the goal row and column, starting at startTime
     // Should be called after final positions are known
-    public void performSlide() {
+    public void performSlide(long startTime) {
         if (goalXPos != xPos || goalYPos != yPos) {
             sliding = true;
+            startXPos = xPos;
+            startYPos = yPos;
+            slideStartTime = startTime;
+            slideDuration = (Math.abs(goalXPos - xPos) + Math.abs(goalYPos - yPos)) * 1000000000L / TILE_SPEED;
         }
     }
 }
\ No newline at end of file
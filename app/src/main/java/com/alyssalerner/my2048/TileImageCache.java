@@ -0,0 +1,190 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.v4.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tile images scaled once to the size they are drawn at, so that Tile.draw can copy them to the
+ * canvas as they are instead of rescaling them every frame.
+ *
+ * Images live in an LruCache keyed by pixel size and exponent and limited by bytes, so after the
+ * board is resized the images of the old size are the first to be evicted. Images of the current
+ * size are also kept in an array, which is all that get() touches once an image exists. Tiles in
+ * the sprite sheet are scaled as soon as the size is set; larger ones (4096 and up) are drawn on a
+ * background thread, with the largest sheet tile standing in (in the array too, so get() doesn't
+ * lock while it waits) until they are ready. Whenever one of those appears the next one is queued
+ * after it, so it is usually ready before the merge that makes it.
+ */
+public class TileImageCache {
+    public static final int SHEET_TILES = 11;           // Tiles in the sprite sheet: 2, 4, 8, ... 2048
+    public static final int SHEET_TILE_LENGTH = 100;    // Height of each tile in the sprite sheet
+
+    private final Bitmap sheet;
+    private final LruCache<Long, Bitmap> cache;
+    private final ExecutorService generator;
+    private final boolean[] queued = new boolean[GridBoard.MAX_EXPONENT + 1];  // Exponents being drawn in the background
+
+    // Images of tileSize (or stand-ins), by exponent. Written under the lock, read by get() without it.
+    private final AtomicReferenceArray<Bitmap> current = new AtomicReferenceArray<Bitmap>(GridBoard.MAX_EXPONENT + 1);
+    private int tileSize;
+    private volatile int version;   // Changes whenever a background image becomes available
+    private int peakBytes;
+
+    // sheet holds SHEET_TILES tiles one above the other; maxBytes limits the images kept
+    public TileImageCache(Bitmap sheet, int maxBytes) {
+        this.sheet = sheet;
+        cache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap image) {
+                return image.getRowBytes() * image.getHeight();
+            }
+        };
+        generator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tile-images");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // A sixteenth of the heap: a whole 8x8 board of distinct large tiles fits comfortably
+    public static int defaultMaxBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+    }
+
+    // Start handing out images of the given pixel size. The sheet's tiles are scaled straight away,
+    // so that get() never has to while the game is running.
+    public synchronized void setTileSize(int size) {
+        if(size == tileSize) return;
+        tileSize = size;
+        for(int i = 0; i < current.length(); i++)
+            current.set(i, null);
+        for(int exponent = 1; exponent <= SHEET_TILES; exponent++)
+            load(exponent);
+        version++;
+    }
+
+    // Image for a tile with the given exponent at the current size. While a large tile is still
+    // being drawn this returns a stand-in; getVersion() changes once the real one is ready.
+    public Bitmap get(int exponent) {
+        Bitmap image = current.get(exponent);
+        return (image != null)? image : load(exponent);
+    }
+
+    // Changes whenever get() might return a better image for some exponent than it did before
+    public int getVersion() {
+        return version;
+    }
+
+    // Bytes of images held by the cache now, and the most it has held
+    public synchronized int getBytes() {
+        return cache.size();
+    }
+
+    public synchronized int getPeakBytes() {
+        return peakBytes;
+    }
+
+    private synchronized Bitmap load(int exponent) {
+        Bitmap image = cache.get(key(tileSize, exponent));
+        if(image == null && exponent <= SHEET_TILES) {
+            Bitmap cut = Bitmap.createBitmap(sheet, 0, SHEET_TILE_LENGTH * (exponent - 1), SHEET_TILE_LENGTH, SHEET_TILE_LENGTH);
+            image = Bitmap.createScaledBitmap(cut, tileSize, tileSize, true);
+            store(tileSize, exponent, image);
+        }
+
+        if(exponent > SHEET_TILES) {
+            // The tile on screen first, then the one its next merge makes
+            if(image == null) {
+                queue(exponent);
+                image = get(SHEET_TILES);   // Until the generator puts the real one in its place
+            }
+            queue(exponent + 1);
+        }
+        current.set(exponent, image);
+        return image;
+    }
+
+    // Draw the image for an exponent in the background, unless it is already there or on its way
+    private void queue(final int exponent) {
+        if(exponent > GridBoard.MAX_EXPONENT || queued[exponent] || cache.get(key(tileSize, exponent)) != null)
+            return;
+        queued[exponent] = true;
+
+        final int size = tileSize;
+        final Bitmap base = get(SHEET_TILES);
+        generator.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap image = null;
+                try {
+                    image = drawTile(base, exponent);
+                } finally {
+                    synchronized(TileImageCache.this) {
+                        queued[exponent] = false;
+                        if(image != null) {
+                            store(size, exponent, image);
+                            if(size == tileSize) {
+                                current.set(exponent, image);
+                                version++;
+                            }
+                        }
+                        else if(size == tileSize) {
+                            current.set(exponent, null);    // Drawing failed: drop the stand-in so a later get() tries again
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void store(int size, int exponent, Bitmap image) {
+        cache.put(key(size, exponent), image);
+        peakBytes = Math.max(peakBytes, cache.size());
+    }
+
+    // The largest sheet tile with the new value written over its number
+    private static Bitmap drawTile(Bitmap base, int exponent) {
+        Bitmap image = base.copy(Bitmap.Config.ARGB_8888, true);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Canvas canvas = new Canvas(image);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        // Cover the old number in the tile's own colour
+        paint.setColor(base.getPixel(width / 2, height / 8));
+        canvas.drawRect(width * 0.1f, height * 0.2f, width * 0.9f, height * 0.8f, paint);
+
+        // Write the new one, shrunk to fit if it is long
+        String label = label(exponent);
+        paint.setColor(Color.WHITE);
+        paint.setFakeBoldText(true);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(height * 0.4f);
+        float textWidth = paint.measureText(label);
+        if(textWidth > width * 0.8f)
+            paint.setTextSize(height * 0.4f * (width * 0.8f) / textWidth);
+        canvas.drawText(label, width / 2f, (height - paint.ascent() - paint.descent()) / 2f, paint);
+        return image;
+    }
+
+    // Text on a tile: its value, or 2^n once the value is too long to read
+    private static String label(int exponent) {
+        return (exponent < 20)? Long.toString(GridBoard.valueOf(exponent)) : "2^" + exponent;
+    }
+
+    private static Long key(int size, int exponent) {
+        return ((long) size << 16) | exponent;
+    }
+}
@@ -0,0 +1,33 @@
+package com.alyssalerner.my2048;
+
+import android.graphics.Bitmap;
+
+/**
+ * Recycles Tile objects so that merges and new tiles don't allocate while the game is running.
+ */
+public class TilePool {
+    private final Tile[] free;
+    private int nFree;
+
+    // Keep at most capacity unused tiles around
+    public TilePool(int capacity) {
+        free = new Tile[capacity];
+    }
+
+    // Get a tile set up with the given parameters, reusing a released one if possible
+    public Tile obtain(int exponent, int row, int col, Bitmap image, int xPos, int yPos) {
+        if(nFree == 0)
+            return new Tile(exponent, row, col, image, xPos, yPos);
+
+        Tile tile = free[--nFree];
+        free[nFree] = null;
+        tile.reset(exponent, row, col, image, xPos, yPos);
+        return tile;
+    }
+
+    // Give back a tile that is no longer on the board
+    public void release(Tile tile) {
+        if(nFree < free.length)
+            free[nFree++] = tile;
+    }
+}
@@ -0,0 +1,89 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Hot paths behind Board: slides, legality, win/loss checks and spawning. Each invocation runs
+ * over all Positions.COUNT boards of one stage, so the reported times are per board.
+ */
+@State(Scope.Thread)
+public class BoardBenchmark {
+    @Param({"EARLY", "MID", "LATE"})
+    public Positions.Stage stage;
+
+    private long[] boards;
+    private GameRandom rand;
+    private int winExponent;
+
+    @Setup
+    public void setUp() {
+        boards = Positions.generate(stage, 2048);
+        rand = new GameRandom(42);
+        winExponent = BitBoard.exponentOf(2048);
+    }
+
+    // Board.slideRight, slideLeft, slideUp and slideDown
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT * BitBoard.N_DIRECTIONS)
+    public long slide() {
+        long sum = 0;
+        for(long board : boards) {
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++)
+                sum += BitBoard.move(board, direction);
+        }
+        return sum;
+    }
+
+    // Board.canMoveInDirection
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT * BitBoard.N_DIRECTIONS)
+    public int canMoveInDirection() {
+        int legal = 0;
+        for(long board : boards) {
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++)
+                if(BitBoard.canMove(board, direction)) legal++;
+        }
+        return legal;
+    }
+
+    // Board.gameLost
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int gameLost() {
+        int lost = 0;
+        for(long board : boards) {
+            if(!BitBoard.canMove(board)) lost++;
+        }
+        return lost;
+    }
+
+    // Board.gameWon
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int gameWon() {
+        int won = 0;
+        for(long board : boards) {
+            if(BitBoard.maxExponent(board) >= winExponent) won++;
+        }
+        return won;
+    }
+
+    // Board.createNewTile
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public long createNewTile() {
+        long sum = 0;
+        for(long board : boards) {
+            sum += BitBoard.spawn(board, rand);
+        }
+        return sum;
+    }
+}
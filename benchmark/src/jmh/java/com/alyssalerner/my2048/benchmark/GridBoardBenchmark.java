@@ -0,0 +1,73 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GridBoard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * How move generation on GridBoard scales with the board size, on mid-game positions (a quarter
+ * to a half of the cells empty). Times are per move; BoardBenchmark.slide is the 4x4 BitBoard
+ * figure to compare against.
+ */
+@State(Scope.Thread)
+public class GridBoardBenchmark {
+    @Param({"3", "4", "5", "6", "7", "8"})
+    public int size;
+
+    private long[][] positions;
+    private GridBoard grid;
+    private GameRandom rand;
+
+    @Setup
+    public void setUp() {
+        positions = Positions.generateGrid(size, 2048);
+        grid = new GridBoard(size);
+        rand = new GameRandom(42);
+    }
+
+    // A move in every direction from every position, as Board plays it (including the status update)
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT * BitBoard.N_DIRECTIONS)
+    public int move() {
+        int legal = 0;
+        for(long[] rows : positions) {
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                grid.reset(rows, 0);
+                if(grid.move(direction)) legal++;
+            }
+        }
+        return legal;
+    }
+
+    // Board.canMoveInDirection: the slide alone, without changing the board
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT * BitBoard.N_DIRECTIONS)
+    public int canMove() {
+        int legal = 0;
+        for(long[] rows : positions) {
+            grid.reset(rows, 0);
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++)
+                if(grid.canMove(direction)) legal++;
+        }
+        return legal;
+    }
+
+    // Board.createNewTile
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int spawn() {
+        int sum = 0;
+        for(long[] rows : positions) {
+            grid.reset(rows, 0);
+            sum += grid.spawn(rand);
+        }
+        return sum;
+    }
+}
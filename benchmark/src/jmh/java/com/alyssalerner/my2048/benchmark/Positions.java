@@ -0,0 +1,83 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GridBoard;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Realistic boards for the benchmarks, taken from seeded random games so every run measures the
+ * same positions.
+ */
+public final class Positions {
+    public static final int COUNT = 256;    // Boards per distribution
+
+    public enum Stage {
+        EARLY(11, 14),      // A handful of small tiles
+        MID(5, 9),          // About half full
+        LATE(1, 3);         // Near-full, where spawning and legality checks are slowest
+
+        final int minEmpty;
+        final int maxEmpty;
+
+        Stage(int minEmpty, int maxEmpty) {
+            this.minEmpty = minEmpty;
+            this.maxEmpty = maxEmpty;
+        }
+    }
+
+    private Positions() {}
+
+    // Collect COUNT distinct positions whose number of empty cells falls within the stage's range
+    public static long[] generate(Stage stage, long seed) {
+        GameRandom rand = new GameRandom(seed);
+        long[] boards = new long[COUNT];
+        Set<Long> seen = new HashSet<Long>();     // Repeats would make lookups look more cache-friendly than they are
+        int found = 0;
+
+        while(found < COUNT) {
+            long board = BitBoard.spawn(BitBoard.spawn(0, rand), rand);
+
+            while(found < COUNT && BitBoard.canMove(board)) {
+                int empty = BitBoard.countEmpty(board);
+                if(empty >= stage.minEmpty && empty <= stage.maxEmpty && rand.nextInt(4) == 0
+                        && seen.add(board))
+                    boards[found++] = board;
+
+                int direction = rand.nextInt(BitBoard.N_DIRECTIONS);
+                long moved = BitBoard.move(board, direction);
+                if(moved != board)
+                    board = BitBoard.spawn(moved, rand);
+            }
+        }
+        return boards;
+    }
+
+    // Collect COUNT positions of a size x size game with between a quarter and a half of the cells
+    // empty, each as the packed rows from GridBoard.copyRows
+    public static long[][] generateGrid(int size, long seed) {
+        GameRandom rand = new GameRandom(seed);
+        GridBoard grid = new GridBoard(size);
+        long[][] positions = new long[COUNT][size];
+        int cells = size * size;
+        int found = 0;
+
+        while(found < COUNT) {
+            grid.reset(null, 0);
+            grid.spawn(rand);
+            grid.spawn(rand);
+
+            while(found < COUNT && grid.movesAvailable()) {
+                int empty = grid.getEmptyCount();
+                if(empty >= cells / 4 && empty <= cells / 2 && rand.nextInt(4) == 0)
+                    grid.copyRows(positions[found++]);
+
+                if(grid.move(rand.nextInt(BitBoard.N_DIRECTIONS)))
+                    grid.spawn(rand);
+            }
+        }
+        return positions;
+    }
+}
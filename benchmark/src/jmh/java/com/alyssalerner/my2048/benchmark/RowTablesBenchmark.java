@@ -0,0 +1,60 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.RowTables;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the row tables: building them from scratch, as every launch did before, against
+ * mapping the file written on the first launch. Each measurement is a single cold call, so the
+ * numbers are what a fresh process pays (with the file already in the page cache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 20)
+@Fork(5)
+public class RowTablesBenchmark {
+    private File dir;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("tables", "");
+        dir.delete();
+        RowTables.load(dir);    // Writes the file
+        file = new File(dir, RowTables.FILE_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public RowTables compute() {
+        return RowTables.compute();
+    }
+
+    @Benchmark
+    public RowTables map() throws IOException {
+        return RowTables.map(file);
+    }
+}
@@ -0,0 +1,103 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GameState;
+import com.alyssalerner.my2048.StateCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Saving and restoring a game with StateCodec, against the Java serialization of one object per
+ * tile that Game.onSaveInstanceState used before. Encoded sizes are printed during setup.
+ */
+@State(Scope.Thread)
+public class SaveStateBenchmark {
+    @Param({"EARLY", "LATE"})
+    public Positions.Stage stage;
+
+    private GameState state;
+    private GameRandom rand;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        state = new GameState();
+        state.reset(Positions.generate(stage, 2048)[0], 12345);
+        rand = new GameRandom(42);
+        encoded = StateCodec.encode(state, rand);
+        serialized = serializeTiles(state.getBoard());
+        System.out.println("\n" + stage + ": StateCodec " + encoded.length + " bytes, serialized tiles " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] saveCodec() {
+        return StateCodec.encode(state, rand);
+    }
+
+    @Benchmark
+    public long restoreCodec() {
+        StateCodec.decode(encoded, state, rand);
+        return state.getBoard();
+    }
+
+    @Benchmark
+    public byte[] saveSerializedTiles() throws IOException {
+        return serializeTiles(state.getBoard());
+    }
+
+    @Benchmark
+    public long restoreSerializedTiles() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        @SuppressWarnings("unchecked")
+        ArrayList<LegacyTile> tiles = (ArrayList<LegacyTile>) in.readObject();
+        long board = 0;
+        for(LegacyTile tile : tiles)
+            board = BitBoard.setExponent(board, tile.row, tile.col, BitBoard.exponentOf(tile.value));
+        return board;
+    }
+
+    private static byte[] serializeTiles(long board) throws IOException {
+        ArrayList<LegacyTile> tiles = new ArrayList<LegacyTile>();
+        for(int row = 0; row < BitBoard.ROWS; row++)
+            for(int col = 0; col < BitBoard.ROWS; col++) {
+                int exponent = BitBoard.getExponent(board, row, col);
+                if(exponent != 0)
+                    tiles.add(new LegacyTile(BitBoard.valueOf(exponent), row, col));
+            }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(tiles);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // Same fields as the SerializableTile class the app used to save
+    private static class LegacyTile implements Serializable {
+        private static final long serialVersionUID = 0L;
+
+        final int value;
+        final int row;
+        final int col;
+
+        LegacyTile(int value, int row, int col) {
+            this.value = value;
+            this.row = row;
+            this.col = col;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.alyssalerner.my2048.benchmark;
+
+import com.alyssalerner.my2048.Symmetry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of finding a position's canonical form, which caches pay on every lookup. Each invocation
+ * runs over all Positions.COUNT boards of one stage, so the reported times are per board.
+ */
+@State(Scope.Thread)
+public class SymmetryBenchmark {
+    @Param({"EARLY", "MID", "LATE"})
+    public Positions.Stage stage;
+
+    private long[] boards;
+
+    @Setup
+    public void setUp() {
+        boards = Positions.generate(stage, 2048);
+    }
+
+    // All 8 images from shared intermediate results, keeping the smallest
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public long canonical() {
+        long sum = 0;
+        for(long board : boards)
+            sum += Symmetry.canonical(board);
+        return sum;
+    }
+
+    // Which symmetry gives the canonical form, needed to map directions
+    @Benchmark
+    @OperationsPerInvocation(Positions.COUNT)
+    public int canonicalSymmetry() {
+        int sum = 0;
+        for(long board : boards)
+            sum += Symmetry.canonicalSymmetry(board);
+        return sum;
+    }
+}
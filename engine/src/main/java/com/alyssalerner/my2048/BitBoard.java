@@ -0,0 +1,185 @@
+package com.alyssalerner.my2048;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Game rules on a packed 64-bit board.
+ *
+ * Each cell holds the exponent of its tile in 4 bits (0 = empty, 1 = 2, 2 = 4, ... 15 = 32768).
+ * Row r lives in bits [16r, 16r+16) and column c of that row is nibble c, so cell (r, c) is
+ * nibble 4r+c. A move on a whole row is a single lookup in a 65,536-entry table (see RowTables),
+ * and columns are handled by transposing the board so that they become rows.
+ */
+public final class BitBoard {
+    public static final int ROWS = 4;               // Number of rows and columns
+    public static final int CELLS = ROWS * ROWS;
+    public static final int MAX_EXPONENT = 15;      // Largest exponent that fits in a cell
+    public static final float FOUR_PROBABILITY = 0.1f;  // Chance that a new tile is a 4 rather than a 2
+
+    // Direction codes, in the same order as Board.Direction
+    public static final int RIGHT = 0;
+    public static final int LEFT = 1;
+    public static final int UP = 2;
+    public static final int DOWN = 3;
+    public static final int N_DIRECTIONS = 4;
+
+    private static final long ROW_MASK = 0xFFFFL;
+
+    // Result of sliding a single row left (towards column 0) or right, indexed by the packed row
+    private static final CharBuffer ROW_LEFT = RowTables.get().getRowLeft();
+    private static final CharBuffer ROW_RIGHT = RowTables.get().getRowRight();
+
+    // Points earned by merges when sliding a row (the same in both directions)
+    private static final IntBuffer ROW_SCORE = RowTables.get().getRowScore();
+
+    // Largest exponent in a row
+    private static final ByteBuffer ROW_MAX = RowTables.get().getRowMax();
+
+    private BitBoard() {}
+
+    // Return the board after sliding in the given direction (unchanged if the move is illegal)
+    public static long move(long board, int direction) {
+        switch(direction) {
+            case RIGHT: return moveRows(board, ROW_RIGHT);
+            case LEFT:  return moveRows(board, ROW_LEFT);
+            case UP:    return transpose(moveRows(transpose(board), ROW_LEFT));
+            case DOWN:  return transpose(moveRows(transpose(board), ROW_RIGHT));
+            default:    return board;
+        }
+    }
+
+    // Points earned by the merges that a move in the given direction would make
+    public static int moveScore(long board, int direction) {
+        if(direction == UP || direction == DOWN)
+            board = transpose(board);
+        else if(direction != RIGHT && direction != LEFT)
+            return 0;
+
+        int score = 0;
+        for(int r = 0; r < ROWS; r++)
+            score += ROW_SCORE.get((int) ((board >>> (16 * r)) & ROW_MASK));
+        return score;
+    }
+
+    // Determine if there's room for tiles to move in the given direction
+    public static boolean canMove(long board, int direction) {
+        return move(board, direction) != board;
+    }
+
+    // Determine if any move is possible
+    public static boolean canMove(long board) {
+        // Any tile can move if there is an empty cell somewhere
+        if(countEmpty(board) > 0)
+            return board != 0;
+
+        // A full board can only move if two neighbours are equal
+        long transposed = transpose(board);
+        for(int r = 0; r < ROWS; r++) {
+            int row = (int) ((board >>> (16 * r)) & ROW_MASK);
+            int col = (int) ((transposed >>> (16 * r)) & ROW_MASK);
+            if(ROW_LEFT.get(row) != row || ROW_LEFT.get(col) != col)
+                return true;
+        }
+        return false;
+    }
+
+    // Swap rows and columns, so that cell (r, c) moves to (c, r)
+    public static long transpose(long x) {
+        long a1 = x & 0xF0F00F0FF0F00F0FL;
+        long a2 = x & 0x0000F0F00000F0F0L;
+        long a3 = x & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    public static int getExponent(long board, int row, int col) {
+        return (int) ((board >>> shift(row, col)) & 0xF);
+    }
+
+    public static long setExponent(long board, int row, int col, int exponent) {
+        int shift = shift(row, col);
+        return (board & ~(0xFL << shift)) | ((long) exponent << shift);
+    }
+
+    // Number of empty cells on the board
+    public static int countEmpty(long board) {
+        return Long.bitCount(emptyCells(board));
+    }
+
+    // Largest exponent on the board (0 if the board is empty)
+    public static int maxExponent(long board) {
+        int max = 0;
+        for(int r = 0; r < ROWS; r++)
+            max = Math.max(max, ROW_MAX.get((int) ((board >>> (16 * r)) & ROW_MASK)));
+        return max;
+    }
+
+    // Bit 4i is set when cell i is empty, all other bits are clear
+    public static long emptyCells(long board) {
+        long x = board | (board >>> 1);
+        x |= x >>> 2;
+        return ~x & 0x1111111111111111L;
+    }
+
+    // Pick a random empty cell in constant time, returned as row*ROWS + col (-1 if the board is full)
+    public static int randomEmptyCell(long board, GameRandom rand) {
+        long empty = emptyCells(board);
+        int count = Long.bitCount(empty);
+        if(count == 0) return -1;
+        return selectBit(empty, rand.nextInt(count)) / 4;
+    }
+
+    // Value (as an exponent) for a new tile: a 2, or a 4 with probability FOUR_PROBABILITY
+    public static int randomTileExponent(GameRandom rand) {
+        return (rand.nextFloat() < FOUR_PROBABILITY)? 2 : 1;
+    }
+
+    // Place a new tile on a random empty cell, the same way as Board.createNewTile
+    // (the board is returned unchanged if it is full)
+    public static long spawn(long board, GameRandom rand) {
+        int exponent = randomTileExponent(rand);
+        int cell = randomEmptyCell(board, rand);
+        return (cell < 0)? board : board | ((long) exponent << (4 * cell));
+    }
+
+    // Convert between tile values (2, 4, 8, ...) and exponents (1, 2, 3, ...)
+    public static int valueOf(int exponent) {
+        return (exponent == 0)? 0 : 1 << exponent;
+    }
+
+    public static int exponentOf(int value) {
+        return (value <= 1)? 0 : 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    // Position of the k-th lowest set bit (k counts from 0), found by halving rather than looping over bits
+    private static int selectBit(long x, int k) {
+        int position = 0;
+        for(int width = 32; width >= 1; width >>>= 1) {
+            int low = Long.bitCount(x & ((1L << width) - 1));
+            if(k >= low) {
+                k -= low;
+                x >>>= width;
+                position += width;
+            }
+        }
+        return position;
+    }
+
+    private static int shift(int row, int col) {
+        return 4 * (ROWS * row + col);
+    }
+
+    private static long moveRows(long board, CharBuffer table) {
+        long result = 0;
+        for(int r = 0; r < ROWS; r++) {
+            int shift = 16 * r;
+            result |= (long) table.get((int) ((board >>> shift) & ROW_MASK)) << shift;
+        }
+        return result;
+    }
+}
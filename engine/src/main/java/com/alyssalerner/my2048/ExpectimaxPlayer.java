@@ -0,0 +1,235 @@
+package com.alyssalerner.my2048;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chooses a move with depth-limited expectimax search over packed boards.
+ *
+ * Max nodes try each legal direction, chance nodes average over every empty cell receiving a 2 or
+ * a 4 with the same odds as createNewTile. The chance nodes directly below the root are searched in
+ * parallel on a thread pool, and positions below them are cached in a shared TranspositionTable.
+ * The heuristic scores every rotation and reflection of a position alike, so the table is keyed
+ * on the canonical form (see Symmetry) and one entry serves all 8.
+ * With a time budget the search deepens one level at a time and returns the deepest move that
+ * finished before the deadline. A search can also be cancelled from another thread, in which case
+ * it stops within a few thousand nodes.
+ */
+public class ExpectimaxPlayer {
+    public static final int NO_MOVE = -1;
+    public static final int MAX_DEPTH = 8;
+
+    private static final float PROBABILITY_CUTOFF = 0.0001f; // Chance nodes less likely than this aren't expanded
+    private static final int NODES_PER_CLOCK_CHECK = 1024;
+    private static final AtomicBoolean NEVER_CANCELLED = new AtomicBoolean();
+
+    private final ExecutorService pool;
+    private final TranspositionTable table;
+    private final boolean ownsPool;
+
+    // Search with the given number of threads and a table of 2^tableBits entries
+    public ExpectimaxPlayer(int threads, int tableBits) {
+        this(Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "expectimax");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), new TranspositionTable(tableBits), true);
+    }
+
+    // Search on an existing pool and table, which are left running when this player is shut down
+    public ExpectimaxPlayer(ExecutorService pool, TranspositionTable table) {
+        this(pool, table, false);
+    }
+
+    private ExpectimaxPlayer(ExecutorService pool, TranspositionTable table, boolean ownsPool) {
+        this.pool = pool;
+        this.table = table;
+        this.ownsPool = ownsPool;
+    }
+
+    // Best direction searching exactly the given number of chance layers, or NO_MOVE if the game is lost
+    public int chooseMove(long board, int depth) {
+        Result result = search(board, depth, Long.MAX_VALUE, NEVER_CANCELLED);
+        return (result == null)? NO_MOVE : result.direction;
+    }
+
+    // Best direction found by deepening the search until the time budget runs out
+    public int chooseMove(long board, long budgetNanos) {
+        return chooseMove(board, budgetNanos, NEVER_CANCELLED);
+    }
+
+    // As above, but gives up as soon as cancelled is set, returning the best move found until then
+    // (or NO_MOVE if not even the first level finished)
+    public int chooseMove(long board, long budgetNanos, AtomicBoolean cancelled) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int best = NO_MOVE;
+
+        for(int depth = 1; depth <= MAX_DEPTH; depth++) {
+            // The first level always completes, unless cancelled, so there is always an answer
+            Result result = search(board, depth, (depth == 1)? Long.MAX_VALUE : deadline, cancelled);
+            if(result == null) break;
+            best = result.direction;
+            if(System.nanoTime() >= deadline) break;
+        }
+        return best;
+    }
+
+    public void shutdown() {
+        if(ownsPool)
+            pool.shutdownNow();
+    }
+
+    // Search all legal moves to the given depth. Returns null if there is no legal move, the deadline
+    // passed or the search was cancelled.
+    private Result search(long board, int depth, long deadline, AtomicBoolean cancelled) {
+        List<List<Future<Float>>> tasks = new ArrayList<List<Future<Float>>>();
+        List<float[]> weights = new ArrayList<float[]>();
+        int[] directions = new int[BitBoard.N_DIRECTIONS];
+        int nMoves = 0;
+
+        // Fan out every chance node below the root as its own task
+        for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+            long moved = BitBoard.move(board, direction);
+            if(moved == board) continue;
+
+            int empty = BitBoard.countEmpty(moved);
+            float p2 = (1 - BitBoard.FOUR_PROBABILITY) / empty;
+            float p4 = BitBoard.FOUR_PROBABILITY / empty;
+
+            List<Future<Float>> children = new ArrayList<Future<Float>>();
+            float[] childWeights = new float[2 * empty];
+            int n = 0;
+            for(int shift = 0; shift < 64; shift += 4) {
+                if(((moved >>> shift) & 0xF) != 0) continue;
+                children.add(pool.submit(new ChanceTask(moved | (1L << shift), depth - 1, p2, deadline, cancelled)));
+                childWeights[n++] = p2;
+                if(p4 > 0) {
+                    children.add(pool.submit(new ChanceTask(moved | (2L << shift), depth - 1, p4, deadline, cancelled)));
+                    childWeights[n++] = p4;
+                }
+            }
+
+            tasks.add(children);
+            weights.add(childWeights);
+            directions[nMoves++] = direction;
+        }
+        if(nMoves == 0) return null;
+
+        Result best = null;
+        boolean aborted = false;
+        for(int m = 0; m < nMoves; m++) {
+            float score = 0;
+            List<Future<Float>> children = tasks.get(m);
+            for(int i = 0; i < children.size(); i++) {
+                float child = await(children.get(i));
+                if(Float.isNaN(child)) aborted = true;
+                score += weights.get(m)[i] * child;
+            }
+            if(best == null || score > best.score)
+                best = new Result(directions[m], score);
+        }
+        return aborted? null : best;
+    }
+
+    private static float await(Future<Float> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Float.NaN;
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class Result {
+        final int direction;
+        final float score;
+
+        Result(int direction, float score) {
+            this.direction = direction;
+            this.score = score;
+        }
+    }
+
+    // Sequential search below one spawned tile. Returns NaN if the deadline passes or the search is cancelled first.
+    private class ChanceTask implements Callable<Float> {
+        private final long board;
+        private final int depth;
+        private final float probability;
+        private final long deadline;
+        private final AtomicBoolean cancelled;
+        private int nodes;
+        private boolean aborted;
+
+        ChanceTask(long board, int depth, float probability, long deadline, AtomicBoolean cancelled) {
+            this.board = board;
+            this.depth = depth;
+            this.probability = probability;
+            this.deadline = deadline;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public Float call() {
+            // Tasks still queued when the search is cancelled finish straight away
+            if(cancelled.get()) return Float.NaN;
+            float score = maxNode(board, depth, probability);
+            return aborted? Float.NaN : score;
+        }
+
+        // Player to move: take the best direction
+        private float maxNode(long board, int depth, float probability) {
+            float best = 0;     // No legal move means the game is lost
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                long moved = BitBoard.move(board, direction);
+                if(moved == board) continue;
+                best = Math.max(best, chanceNode(moved, depth, probability));
+                if(aborted) return 0;
+            }
+            return best;
+        }
+
+        // Tile about to spawn: average over every cell and value
+        private float chanceNode(long board, int depth, float probability) {
+            if(depth <= 0 || probability < PROBABILITY_CUTOFF)
+                return Heuristic.evaluate(board);
+
+            if(++nodes % NODES_PER_CLOCK_CHECK == 0 && (System.nanoTime() >= deadline || cancelled.get())) {
+                aborted = true;
+                return 0;
+            }
+
+            long key = Symmetry.canonical(board);
+            float cached = table.get(key, depth);
+            if(!Float.isNaN(cached))
+                return cached;
+
+            int empty = BitBoard.countEmpty(board);
+            float p2 = (1 - BitBoard.FOUR_PROBABILITY) / empty;
+            float p4 = BitBoard.FOUR_PROBABILITY / empty;
+            float score = 0;
+
+            for(int shift = 0; shift < 64; shift += 4) {
+                if(((board >>> shift) & 0xF) != 0) continue;
+                score += p2 * maxNode(board | (1L << shift), depth - 1, probability * p2);
+                if(p4 > 0)
+                    score += p4 * maxNode(board | (2L << shift), depth - 1, probability * p4);
+                if(aborted) return 0;
+            }
+
+            table.put(key, depth, score);
+            return score;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.alyssalerner.my2048;
+
+/**
+ * File format shared by JournalWriter and JournalReader.
+ *
+ * Journal file:
+ *   header      magic (4 bytes), version (1 byte), starting board (8 bytes), starting score (8 bytes)
+ *   records     one varint each:
+ *                 move:      direction | spawn cell << 2 | (spawn exponent - 1) << 6
+ *                            (always below POSITION, so a 4x4 move takes a single byte)
+ *                 position:  POSITION, then the board (8 bytes) and score (varint) it jumps to,
+ *                            written after an undo, redo or reset
+ *
+ * Index file (journal name + ".idx"), one fixed-size entry every snapshot interval moves:
+ *   move number (8), journal offset of the next record (8), board (8), score (8)
+ *
+ * Both files are only ever appended to, so a journal cut short by a crash is still readable up to
+ * its last complete record.
+ */
+public final class GameJournal {
+    public static final int MAGIC = 0x32303438;     // "2048"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 1 + 8 + 8;
+    public static final int INDEX_ENTRY_SIZE = 4 * 8;
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final int CELL_BITS = 4;
+    private static final int EXPONENT_SHIFT = 2 + CELL_BITS;
+    public static final int POSITION = 1 << (EXPONENT_SHIFT + 1);
+
+    private GameJournal() {}
+
+    public static int encodeMove(int direction, int cell, int spawnExponent) {
+        return direction | (cell << 2) | ((spawnExponent - 1) << EXPONENT_SHIFT);
+    }
+
+    public static int moveDirection(int record) {
+        return record & 3;
+    }
+
+    public static int moveCell(int record) {
+        return (record >>> 2) & ((1 << CELL_BITS) - 1);
+    }
+
+    public static int moveExponent(int record) {
+        return (record >>> EXPONENT_SHIFT) + 1;
+    }
+}
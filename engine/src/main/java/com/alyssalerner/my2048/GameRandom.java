@@ -0,0 +1,67 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Small, fast random number generator for spawning tiles (SplitMix64).
+ *
+ * The whole state is one long, so a game can be replayed exactly from its seed, saved and restored
+ * with getState/setState, and split into independent streams for parallel simulations. Unlike
+ * java.util.Random it does no atomic updates, so each thread should own its own instance.
+ */
+public final class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    // Seeded from the clock
+    public GameRandom() {
+        this(System.nanoTime());
+    }
+
+    public GameRandom(long seed) {
+        setSeed(seed);
+    }
+
+    public void setSeed(long seed) {
+        state = mix(seed);
+    }
+
+    // Seed with stream number `stream` of the given seed. Different streams of the same seed are
+    // independent, so game i of a batch can use stream i whichever thread plays it.
+    public void setSeed(long seed, long stream) {
+        state = mix(seed + (stream + 1) * GOLDEN_GAMMA);
+    }
+
+    // A new generator whose sequence is independent of this one's
+    public GameRandom split() {
+        return new GameRandom(nextLong());
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    // Uniform in [0, bound)
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    // Uniform in [0, 1)
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,86 @@
+package com.alyssalerner.my2048;
+
+/**
+ * A packed board together with its score and status, kept up to date as moves and spawns happen.
+ *
+ * Each change only looks at what it affected: a move updates the score from the merges it made and
+ * the max tile only if something merged, a spawn just takes away an empty cell, and the "any move
+ * possible" check is only needed once the board is full. Asking whether the game is won or lost
+ * is then a field read.
+ */
+public class GameState {
+    private long board;
+    private long score;
+    private int maxExponent;
+    private int emptyCount;
+    private boolean movesAvailable;
+
+    public GameState() {
+        reset(0, 0);
+    }
+
+    // Start from the given packed board and score, recomputing everything else
+    public void reset(long board, long score) {
+        this.board = board;
+        this.score = score;
+        maxExponent = BitBoard.maxExponent(board);
+        emptyCount = BitBoard.countEmpty(board);
+        movesAvailable = BitBoard.canMove(board);
+    }
+
+    // Slide in the given direction. Returns false, changing nothing, if the move isn't legal.
+    public boolean move(int direction) {
+        long moved = BitBoard.move(board, direction);
+        if(moved == board) return false;
+
+        int points = BitBoard.moveScore(board, direction);
+        board = moved;
+        if(points > 0) {
+            score += points;
+            maxExponent = BitBoard.maxExponent(moved);
+        }
+        emptyCount = BitBoard.countEmpty(moved);
+        movesAvailable = true;  // A legal move always leaves at least one empty cell
+        return true;
+    }
+
+    // Place a new tile on a random empty cell. Returns the cell (row*ROWS + col), or -1 if the board is full.
+    public int spawn(GameRandom rand) {
+        int exponent = BitBoard.randomTileExponent(rand);
+        int cell = BitBoard.randomEmptyCell(board, rand);
+        if(cell >= 0)
+            place(cell / BitBoard.ROWS, cell % BitBoard.ROWS, exponent);
+        return cell;
+    }
+
+    // Put a tile with the given exponent on an empty cell
+    public void place(int row, int col, int exponent) {
+        board = BitBoard.setExponent(board, row, col, exponent);
+        maxExponent = Math.max(maxExponent, exponent);
+        emptyCount--;
+
+        // A tile next to an empty cell can always move, so only a full board needs checking
+        movesAvailable = (emptyCount > 0) || BitBoard.canMove(board);
+    }
+
+    public long getBoard() {
+        return board;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public int getMaxExponent() {
+        return maxExponent;
+    }
+
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    // True if at least one direction is a legal move
+    public boolean movesAvailable() {
+        return movesAvailable;
+    }
+}
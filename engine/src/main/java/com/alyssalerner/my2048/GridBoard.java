@@ -0,0 +1,298 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Game rules on a square board of any size from MIN_SIZE to MAX_SIZE, with no practical cap on
+ * tile values, together with its score and status (kept up to date as in GameState).
+ *
+ * Each row is packed into one long with a byte per cell holding the tile's exponent (0 = empty,
+ * up to 2^255), column c in bits [8c, 8c+8). The rows are stored as an 8x8 byte matrix whatever
+ * the size, with unused rows and columns left at zero, so that:
+ *   - a left move slides each row, skipping empty cells a byte at a time,
+ *   - a right move is the same on rows whose bytes have been reversed (Long.reverseBytes),
+ *   - up and down moves work on rows after a byte transpose of the matrix (three rounds of masked
+ *     swaps between pairs of longs), which is transposed back afterwards,
+ *   - empty cells and equal neighbours are found a whole row at a time with SWAR byte tests.
+ * The classic 4x4 game is faster on BitBoard, which trades the tile cap for row lookup tables.
+ */
+public final class GridBoard {
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 8;
+    public static final int MAX_EXPONENT = 255;     // Largest exponent that fits in a cell
+
+    private static final long LOW_BYTES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_SEVEN = 0x7F7F7F7F7F7F7F7FL;
+
+    private final int size;
+    private final long laneMask;    // Bytes of a row that hold cells
+    private final long[] rows = new long[MAX_SIZE];
+    private final long[] scratch = new long[MAX_SIZE];
+
+    private long score;
+    private int maxExponent;
+    private int emptyCount;
+    private boolean movesAvailable;
+
+    // Filled in by slideLeft
+    private long slidePoints;
+    private boolean slideMerged;
+
+    // An empty board with size rows and columns
+    public GridBoard(int size) {
+        if(size < MIN_SIZE || size > MAX_SIZE)
+            throw new IllegalArgumentException("Board size must be between " + MIN_SIZE + " and " + MAX_SIZE + ": " + size);
+        this.size = size;
+        laneMask = (size == MAX_SIZE)? -1L : (1L << (8 * size)) - 1;
+        reset(null, 0);
+    }
+
+    // Start from the given rows (as returned by copyRows, or null for an empty board) and score
+    public void reset(long[] rows, long score) {
+        for(int r = 0; r < MAX_SIZE; r++)
+            this.rows[r] = (rows != null && r < size)? rows[r] & laneMask : 0;
+        this.score = score;
+        recount();
+    }
+
+    // Start from a packed 4x4 BitBoard (only for a board of that size)
+    public void resetFromBitBoard(long board, long score) {
+        if(size != BitBoard.ROWS)
+            throw new IllegalStateException("Not a " + BitBoard.ROWS + "x" + BitBoard.ROWS + " board");
+        for(int r = 0; r < MAX_SIZE; r++) {
+            long row = 0;
+            for(int c = 0; r < size && c < size; c++)
+                row |= (long) BitBoard.getExponent(board, r, c) << (8 * c);
+            rows[r] = row;
+        }
+        this.score = score;
+        recount();
+    }
+
+    // True if the board can be packed into a BitBoard (4x4 and no tile above 32768)
+    public boolean fitsBitBoard() {
+        return size == BitBoard.ROWS && maxExponent <= BitBoard.MAX_EXPONENT;
+    }
+
+    // The board packed as a BitBoard (see fitsBitBoard)
+    public long toBitBoard() {
+        if(!fitsBitBoard())
+            throw new IllegalStateException("Board doesn't fit in a BitBoard");
+        long board = 0;
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++)
+                board = BitBoard.setExponent(board, r, c, getExponent(r, c));
+        return board;
+    }
+
+    // Slide in the given direction (a BitBoard direction code). Returns false, changing nothing, if the move isn't legal.
+    public boolean move(int direction) {
+        if(!slide(direction)) return false;
+
+        System.arraycopy(scratch, 0, rows, 0, MAX_SIZE);
+        if(slideMerged) {
+            score += slidePoints;
+            maxExponent = scanMaxExponent();
+        }
+        emptyCount = countEmpty();
+        movesAvailable = true;  // A legal move always leaves at least one empty cell
+        return true;
+    }
+
+    // Determine if there's room for tiles to move in the given direction
+    public boolean canMove(int direction) {
+        return slide(direction);
+    }
+
+    // Place a new tile on a random empty cell, the same way as GameState.spawn.
+    // Returns the cell (row*size + col), or -1 if the board is full.
+    public int spawn(GameRandom rand) {
+        int exponent = BitBoard.randomTileExponent(rand);
+        if(emptyCount == 0) return -1;
+
+        int k = rand.nextInt(emptyCount);
+        for(int r = 0; r < size; r++) {
+            long empty = emptyBytes(rows[r]);
+            int count = Long.bitCount(empty);
+            if(k >= count) {
+                k -= count;
+                continue;
+            }
+            // Drop the k lowest empty cells of this row; the next one is the pick
+            for(; k > 0; k--)
+                empty &= empty - 1;
+            int col = Long.numberOfTrailingZeros(empty) / 8;
+            place(r, col, exponent);
+            return r * size + col;
+        }
+        return -1;
+    }
+
+    // Put a tile with the given exponent on an empty cell
+    public void place(int row, int col, int exponent) {
+        rows[row] |= (long) exponent << (8 * col);
+        maxExponent = Math.max(maxExponent, exponent);
+        emptyCount--;
+
+        // A tile next to an empty cell can always move, so only a full board needs checking
+        movesAvailable = (emptyCount > 0) || hasEqualNeighbours();
+    }
+
+    public int getExponent(int row, int col) {
+        return (int) (rows[row] >>> (8 * col)) & 0xFF;
+    }
+
+    // Copy the packed rows (size longs) into the given array, e.g. to store them in UndoHistory
+    public void copyRows(long[] into) {
+        System.arraycopy(rows, 0, into, 0, size);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public int getMaxExponent() {
+        return maxExponent;
+    }
+
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    // True if at least one direction is a legal move
+    public boolean movesAvailable() {
+        return movesAvailable;
+    }
+
+    // Tile value for an exponent, or Long.MAX_VALUE for tiles too large for a long
+    public static long valueOf(int exponent) {
+        if(exponent == 0) return 0;
+        return (exponent < 63)? 1L << exponent : Long.MAX_VALUE;
+    }
+
+    // Slide the rows into scratch. Returns false if nothing moved.
+    private boolean slide(int direction) {
+        if(direction < BitBoard.RIGHT || direction > BitBoard.DOWN) return false;
+        boolean columns = (direction == BitBoard.UP || direction == BitBoard.DOWN);
+        boolean reversed = (direction == BitBoard.RIGHT || direction == BitBoard.DOWN);
+
+        System.arraycopy(rows, 0, scratch, 0, MAX_SIZE);
+        if(columns) transpose(scratch);
+
+        boolean changed = false;
+        slidePoints = 0;
+        slideMerged = false;
+        for(int r = 0; r < size; r++) {
+            long row = scratch[r];
+            if(row == 0) continue;
+            long moved = reversed? reverse(slideLeft(reverse(row))) : slideLeft(row);
+            if(moved != row) {
+                scratch[r] = moved;
+                changed = true;
+            }
+        }
+
+        if(columns) transpose(scratch);
+        return changed;
+    }
+
+    // Slide and merge one row towards column 0
+    private long slideLeft(long row) {
+        long result = 0;
+        int target = 0;         // Next free column
+        int pending = 0;        // Exponent waiting at target-1 that may still merge
+
+        // Unused columns are zero, so the loop stops after the last tile
+        for(; row != 0; row >>>= 8) {
+            int e = (int) row & 0xFF;
+            if(e == 0) continue;
+
+            if(e == pending && e < MAX_EXPONENT) {
+                result += 1L << (8 * (target - 1));     // One more on the exponent already there
+                slidePoints += valueOf(e + 1);
+                slideMerged = true;
+                pending = 0;    // A merged tile can't merge again on the same slide
+            }
+            else {
+                result |= (long) e << (8 * target++);
+                pending = e;
+            }
+        }
+        return result;
+    }
+
+    // Reverse the order of the cells in a row
+    private long reverse(long row) {
+        return Long.reverseBytes(row) >>> (8 * (MAX_SIZE - size));
+    }
+
+    // Transpose the 8x8 byte matrix in place, so that byte c of row r moves to byte r of row c
+    private static void transpose(long[] m) {
+        // Swap the top-right and bottom-left 4x4 blocks
+        for(int i = 0; i < 4; i++) {
+            long a = m[i];
+            long b = m[i + 4];
+            m[i] = (a & 0x00000000FFFFFFFFL) | (b << 32);
+            m[i + 4] = (a >>> 32) | (b & 0xFFFFFFFF00000000L);
+        }
+        // Then the 2x2 blocks within each of those
+        for(int i = 0; i < MAX_SIZE; i += (i % 4 == 1)? 3 : 1) {
+            long a = m[i];
+            long b = m[i + 2];
+            m[i] = (a & 0x0000FFFF0000FFFFL) | ((b & 0x0000FFFF0000FFFFL) << 16);
+            m[i + 2] = ((a >>> 16) & 0x0000FFFF0000FFFFL) | (b & 0xFFFF0000FFFF0000L);
+        }
+        // Then single bytes
+        for(int i = 0; i < MAX_SIZE; i += 2) {
+            long a = m[i];
+            long b = m[i + 1];
+            m[i] = (a & 0x00FF00FF00FF00FFL) | ((b & 0x00FF00FF00FF00FFL) << 8);
+            m[i + 1] = ((a >>> 8) & 0x00FF00FF00FF00FFL) | (b & 0xFF00FF00FF00FF00L);
+        }
+    }
+
+    // High bit of each byte set where the row has an empty cell
+    private long emptyBytes(long row) {
+        long nonZero = ((row & LOW_SEVEN) + LOW_SEVEN) | row;
+        return ~nonZero & HIGH_BITS & laneMask;
+    }
+
+    private int countEmpty() {
+        int count = 0;
+        for(int r = 0; r < size; r++)
+            count += Long.bitCount(emptyBytes(rows[r]));
+        return count;
+    }
+
+    // True if two cells next to each other (in a row or a column) hold the same tile
+    private boolean hasEqualNeighbours() {
+        long pairMask = laneMask >>> 8;     // Cells that have a neighbour on their right
+        for(int r = 0; r < size; r++) {
+            if(hasZeroByte((rows[r] ^ (rows[r] >>> 8)) | ~pairMask)) return true;
+            if(r + 1 < size && hasZeroByte((rows[r] ^ rows[r + 1]) | ~laneMask)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasZeroByte(long x) {
+        return ((x - LOW_BYTES) & ~x & HIGH_BITS) != 0;
+    }
+
+    private int scanMaxExponent() {
+        int max = 0;
+        for(int r = 0; r < size; r++)
+            for(long row = rows[r]; row != 0; row >>>= 8)
+                max = Math.max(max, (int) row & 0xFF);
+        return max;
+    }
+
+    // Recompute everything but the score from the rows
+    private void recount() {
+        maxExponent = scanMaxExponent();
+        emptyCount = countEmpty();
+        movesAvailable = (emptyCount > 0)? emptyCount < size * size : hasEqualNeighbours();
+    }
+}
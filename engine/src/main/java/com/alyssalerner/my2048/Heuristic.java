@@ -0,0 +1,38 @@
+package com.alyssalerner.my2048;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Static evaluation of a packed board, used by the AI at the leaves of its search.
+ *
+ * Every row and column is scored on its own by a 65,536-entry table (see RowTables) that rewards
+ * empty cells and possible merges, and penalises rows that are not monotonic or that hold a lot of
+ * large tiles.
+ */
+public final class Heuristic {
+    // Weights of the row score, which RowTables builds into its heuristic table
+    static final float LOST_PENALTY = 200000.0f;
+    static final float MONOTONICITY_POWER = 4.0f;
+    static final float MONOTONICITY_WEIGHT = 47.0f;
+    static final float SUM_POWER = 3.5f;
+    static final float SUM_WEIGHT = 11.0f;
+    static final float MERGES_WEIGHT = 700.0f;
+    static final float EMPTY_WEIGHT = 270.0f;
+
+    private static final long ROW_MASK = 0xFFFFL;
+
+    private static final FloatBuffer ROW_HEURISTIC = RowTables.get().getRowHeuristic();
+
+    private Heuristic() {}
+
+    // Higher is better. Both the rows and the columns of the board are scored.
+    public static float evaluate(long board) {
+        long transposed = BitBoard.transpose(board);
+        float score = 0;
+        for(int r = 0; r < BitBoard.ROWS; r++) {
+            score += ROW_HEURISTIC.get((int) ((board >>> (16 * r)) & ROW_MASK));
+            score += ROW_HEURISTIC.get((int) ((transposed >>> (16 * r)) & ROW_MASK));
+        }
+        return score;
+    }
+}
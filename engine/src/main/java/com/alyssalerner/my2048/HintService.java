@@ -0,0 +1,141 @@
+package com.alyssalerner.my2048;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Suggests a move for a position, searched with ExpectimaxPlayer on background threads.
+ *
+ * request() never waits: it answers at once from a small cache of recent positions, or queues a
+ * search and returns NO_HINT. A search runs until its budget (counted from the request) is used up
+ * and keeps the deepest answer found, or stops early when cancel() or a newer request comes in.
+ * Finished answers go into the cache, and the listener is told on the search thread. The cache is
+ * a direct-mapped table read and written without locks, like TranspositionTable. It is keyed on
+ * the canonical form of the position (see Symmetry), with the direction stored as it applies to
+ * that form, so a hint found for one position also answers its 7 rotations and reflections.
+ *
+ * Given a trained NTupleNetwork (setNetwork), hints come from it instead: its choice takes a
+ * microsecond, so request() answers at once and no search is started.
+ */
+public class HintService {
+    public static final int NO_HINT = ExpectimaxPlayer.NO_MOVE;
+    private static final int CACHE_BITS = 8;
+    private static final int TABLE_BITS = 16;   // Positions in the search's transposition table (1 MB)
+
+    public interface Listener {
+        // A hint for board is ready; called on the search thread
+        void onHint(long board, int direction);
+    }
+
+    private final ExpectimaxPlayer player;
+    private final ExecutorService worker;
+    private final long[] cacheKeys = new long[1 << CACHE_BITS];
+    private final long[] cacheData = new long[1 << CACHE_BITS];    // Direction + 1, so an empty slot is never a hit
+    private volatile long budgetNanos;
+    private volatile NTupleNetwork network;                        // Answers instead of searching, if set
+    private volatile AtomicBoolean current = new AtomicBoolean();  // Cancels the latest search
+
+    // Search for at most budgetNanos per hint with the given number of threads
+    public HintService(long budgetNanos, int threads) {
+        this.budgetNanos = budgetNanos;
+        player = new ExpectimaxPlayer(threads, TABLE_BITS);
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hints");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // Hint for a BitBoard position: the cached direction, or NO_HINT while a search is started.
+    // Any search still running for another position is cancelled.
+    public int request(final long board, final Listener listener) {
+        int cached = getCached(board);
+        if(cached != NO_HINT) return cached;
+
+        NTupleNetwork network = this.network;
+        if(network != null) {
+            cancel();
+            int direction = network.chooseMove(board);
+            if(direction != NTupleNetwork.NO_MOVE) putCached(board, direction);
+            return direction;
+        }
+
+        cancel();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        current = cancelled;
+        final long deadline = System.nanoTime() + budgetNanos;
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                long left = deadline - System.nanoTime();
+                if(cancelled.get() || left <= 0) return;
+
+                int direction = player.chooseMove(board, left, cancelled);
+                if(cancelled.get() || direction == ExpectimaxPlayer.NO_MOVE) return;
+                putCached(board, direction);
+                listener.onHint(board, direction);
+            }
+        });
+        return NO_HINT;
+    }
+
+    // Abandon the search in progress, if any. Its result is thrown away.
+    public void cancel() {
+        current.set(true);
+    }
+
+    // The direction found earlier for board or one of its symmetric positions, or NO_HINT
+    public int getCached(long board) {
+        int symmetry = Symmetry.canonicalSymmetry(board);
+        long key = Symmetry.apply(board, symmetry);
+        int slot = slot(key);
+        long d = cacheData[slot];
+        if((cacheKeys[slot] ^ d) != key || d == 0)
+            return NO_HINT;
+        return Symmetry.mapDirection((int) d - 1, Symmetry.inverse(symmetry));
+    }
+
+    public void setBudget(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public long getBudget() {
+        return budgetNanos;
+    }
+
+    // Answer hints with network rather than searching, or search again if it is null
+    public void setNetwork(NTupleNetwork network) {
+        this.network = network;
+    }
+
+    public NTupleNetwork getNetwork() {
+        return network;
+    }
+
+    public void shutdown() {
+        cancel();
+        worker.shutdownNow();
+        player.shutdown();
+    }
+
+    private void putCached(long board, int direction) {
+        int symmetry = Symmetry.canonicalSymmetry(board);
+        long key = Symmetry.apply(board, symmetry);
+        int slot = slot(key);
+        long d = Symmetry.mapDirection(direction, symmetry) + 1;
+        cacheKeys[slot] = key ^ d;
+        cacheData[slot] = d;
+    }
+
+    private static int slot(long board) {
+        long h = board * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> (64 - CACHE_BITS));
+    }
+}
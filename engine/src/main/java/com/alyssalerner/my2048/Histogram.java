@@ -0,0 +1,109 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Fixed-memory histogram of non-negative values (nanoseconds, counts, scores), with percentiles.
+ *
+ * Buckets are log-linear: values below 32 get a bucket each, and every power of two above that is
+ * split into 32 equal buckets, so any value is placed within about 3% whatever its size. Values
+ * from 0 to 2^40 (about 18 minutes in nanoseconds) fit in about a thousand counters; larger ones
+ * are counted in the top bucket. Recording is a few shifts and an increment, and never allocates.
+ * Not thread-safe: record from one thread, and read from that thread or once it has stopped.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;     // Values up to 2^MAX_BITS are told apart
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long value) {
+        if(value < 0) value = 0;
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        if(value < min) min = value;
+        if(value > max) max = value;
+    }
+
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            counts[i] = 0;
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return (count == 0)? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return (count == 0)? 0 : sum / count;
+    }
+
+    // Value below which the given fraction (0 to 1) of recorded values fall, to within a bucket.
+    // Returns 0 if nothing has been recorded.
+    public long getPercentile(double fraction) {
+        if(count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank)
+                return Math.min(max, highestValueIn(i));
+        }
+        return max;
+    }
+
+    // Number of recorded values that are certainly below value: those in lower buckets than its own
+    public long getCountBelow(long value) {
+        int bucket = bucketOf(Math.max(0, value));
+        long below = 0;
+        for(int i = 0; i < bucket; i++)
+            below += counts[i];
+        return below;
+    }
+
+    // Number of buckets, and the range and count of each, for exporting the whole distribution
+    public int getBuckets() {
+        return BUCKETS;
+    }
+
+    public long getCountInBucket(int bucket) {
+        return counts[bucket];
+    }
+
+    public long getBucketLow(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    private static long highestValueIn(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    private static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) return (int) value;
+        int bits = 64 - Long.numberOfLeadingZeros(value);   // At least SUB_BITS + 1
+        if(bits > MAX_BITS) return BUCKETS - 1;
+        int shift = bits - SUB_BITS - 1;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+}
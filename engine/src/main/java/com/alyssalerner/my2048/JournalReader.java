@@ -0,0 +1,166 @@
+package com.alyssalerner.my2048;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+
+/**
+ * Replays a journal written by JournalWriter one record at a time, without loading the file.
+ *
+ * seek() uses the snapshot index to jump close to the wanted move and replays only the moves after
+ * the nearest snapshot, so going to move 50,000 of a long game reads at most one snapshot interval
+ * of records.
+ */
+public class JournalReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final RandomAccessFile journalFile;
+    private final long startBoard;
+    private final long startScore;
+    private final GameState state = new GameState();
+
+    private DataInputStream in;
+    private long moveNumber;
+    private int lastDirection = -1;
+
+    public JournalReader(File file) throws IOException {
+        this.file = file;
+        journalFile = new RandomAccessFile(file, "r");
+        if(journalFile.length() < GameJournal.HEADER_SIZE || journalFile.readInt() != GameJournal.MAGIC) {
+            journalFile.close();
+            throw new IOException("Not a game journal: " + file);
+        }
+        int version = journalFile.readByte();
+        if(version != GameJournal.VERSION) {
+            journalFile.close();
+            throw new IOException("Unsupported journal version " + version);
+        }
+        startBoard = journalFile.readLong();
+        startScore = journalFile.readLong();
+        rewind();
+    }
+
+    // Go back to the start of the game
+    public void rewind() throws IOException {
+        position(GameJournal.HEADER_SIZE, 0, startBoard, startScore);
+    }
+
+    // Apply the next record. Returns false at the end of the journal (or a record cut short by a crash).
+    public boolean next() throws IOException {
+        try {
+            long record = readVarLong();
+            if(record == GameJournal.POSITION) {
+                long board = in.readLong();
+                long score = readVarLong();
+                state.reset(board, score);
+                lastDirection = -1;
+                return true;
+            }
+
+            int move = (int) record;
+            lastDirection = GameJournal.moveDirection(move);
+            int cell = GameJournal.moveCell(move);
+            state.move(lastDirection);
+            state.place(cell / BitBoard.ROWS, cell % BitBoard.ROWS, GameJournal.moveExponent(move));
+            moveNumber++;
+            return true;
+        } catch(EOFException e) {
+            return false;
+        }
+    }
+
+    // Replay up to just after the given move. Returns false if the journal ends before it.
+    public boolean seek(long target) throws IOException {
+        long[] snapshot = findSnapshot(target);
+        if(snapshot != null && snapshot[0] > moveNumber || target < moveNumber) {
+            if(snapshot != null)
+                position(snapshot[1], snapshot[0], snapshot[2], snapshot[3]);
+            else
+                rewind();
+        }
+
+        while(moveNumber < target) {
+            if(!next()) return false;
+        }
+        return true;
+    }
+
+    // Number of moves replayed so far
+    public long getMoveNumber() {
+        return moveNumber;
+    }
+
+    // Direction of the last move replayed, or -1 if the last record wasn't a move
+    public int getLastDirection() {
+        return lastDirection;
+    }
+
+    // Game as of the last record replayed
+    public GameState getState() {
+        return state;
+    }
+
+    public void close() throws IOException {
+        journalFile.close();
+    }
+
+    private void position(long offset, long moveNumber, long board, long score) throws IOException {
+        journalFile.getChannel().position(offset);
+        InputStream stream = Channels.newInputStream(journalFile.getChannel());
+        in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        this.moveNumber = moveNumber;
+        state.reset(board, score);
+        lastDirection = -1;
+    }
+
+    // Binary search the index for the last snapshot at or before the target move.
+    // Returns {move number, offset, board, score}, or null if there is none.
+    private long[] findSnapshot(long target) throws IOException {
+        File indexFile = new File(file.getPath() + GameJournal.INDEX_SUFFIX);
+        if(!indexFile.exists()) return null;
+
+        RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+        try {
+            long journalLength = journalFile.length();
+            long low = 0;
+            long high = index.length() / GameJournal.INDEX_ENTRY_SIZE - 1;
+            long[] best = null;
+
+            while(low <= high) {
+                long mid = (low + high) >>> 1;
+                index.seek(mid * GameJournal.INDEX_ENTRY_SIZE);
+                long entryMove = index.readLong();
+                if(entryMove <= target) {
+                    long offset = index.readLong();
+                    if(offset <= journalLength)     // Ignore entries past the end of a journal cut short by a crash
+                        best = new long[] {entryMove, offset, index.readLong(), index.readLong()};
+                    low = mid + 1;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+            return best;
+        } finally {
+            index.close();
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.alyssalerner.my2048;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records a game as an append-only journal (see GameJournal) on a background thread.
+ *
+ * The game thread only drops a few ints into a lock-free queue, so recording never waits for the
+ * disk. Records must all come from one thread (the game thread), as the queue has a single
+ * producer. The writer thread drains the queue in batches into buffered streams, replays the moves
+ * to know the board, and every snapshotInterval moves appends an index entry so readers can seek.
+ */
+public class JournalWriter {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1024;
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_PARK_MILLIS = 50;    // How long the writer sleeps when there is nothing to write
+    private static final int EMPTY = -1;
+
+    private final SpscIntQueue queue = new SpscIntQueue(QUEUE_CAPACITY);
+    private final int[] positionRecord = new int[5];
+    private final int snapshotInterval;
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // Writer thread only
+    private final DataOutputStream journal;
+    private final DataOutputStream index;
+    private final GameState state = new GameState();
+    private long journalOffset;
+    private long moveNumber;
+
+    // Start a journal for a game currently at the given board and score
+    public JournalWriter(File file, long board, long score) throws IOException {
+        this(file, board, score, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public JournalWriter(File file, long board, long score, int snapshotInterval) throws IOException {
+        this.snapshotInterval = snapshotInterval;
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(file.getPath() + GameJournal.INDEX_SUFFIX)), BUFFER_SIZE));
+
+        journal.writeInt(GameJournal.MAGIC);
+        journal.writeByte(GameJournal.VERSION);
+        journal.writeLong(board);
+        journal.writeLong(score);
+        journalOffset = GameJournal.HEADER_SIZE;
+        state.reset(board, score);
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Record a move and the tile that spawned after it. Called from the game thread; never blocks on I/O.
+    public void recordMove(int direction, int cell, int spawnExponent) {
+        int record = GameJournal.encodeMove(direction, cell, spawnExponent);
+        while(!closed && !queue.offer(record))
+            Thread.yield();     // Only if the writer is a whole queue behind
+    }
+
+    // Record a jump to a different position (undo, redo or reset)
+    public void recordPosition(long board, long score) {
+        positionRecord[0] = GameJournal.POSITION;
+        positionRecord[1] = (int) (board >>> 32);
+        positionRecord[2] = (int) board;
+        positionRecord[3] = (int) (score >>> 32);
+        positionRecord[4] = (int) score;
+        while(!closed && !queue.offer(positionRecord, positionRecord.length))
+            Thread.yield();
+    }
+
+    // Write everything recorded so far and close the files
+    public void close() throws IOException {
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(failure != null)
+            throw failure;
+    }
+
+    private void writeLoop() {
+        try {
+            while(true) {
+                boolean wasClosed = closed;     // Read before draining, so nothing offered before close() is missed
+                boolean wroteAny = false;
+                int record;
+                while((record = queue.poll(EMPTY)) != EMPTY) {
+                    write(record);
+                    wroteAny = true;
+                }
+
+                if(wroteAny) {
+                    journal.flush();
+                    index.flush();
+                }
+                if(wasClosed) break;
+
+                try {
+                    Thread.sleep(IDLE_PARK_MILLIS);
+                } catch(InterruptedException e) {
+                    // Woken by close()
+                }
+            }
+        } catch(IOException e) {
+            failure = e;
+        } finally {
+            try {
+                journal.close();
+                index.close();
+            } catch(IOException e) {
+                if(failure == null) failure = e;
+            }
+        }
+    }
+
+    private void write(int record) throws IOException {
+        if(record == GameJournal.POSITION) {
+            // The rest of the record was offered in the same group, so it is already there
+            long board = ((long) queue.poll(0) << 32) | (queue.poll(0) & 0xFFFFFFFFL);
+            long score = ((long) queue.poll(0) << 32) | (queue.poll(0) & 0xFFFFFFFFL);
+            writeVarLong(GameJournal.POSITION);
+            journal.writeLong(board);
+            journalOffset += 8;
+            writeVarLong(score);
+            state.reset(board, score);
+            return;
+        }
+
+        writeVarLong(record);
+        state.move(GameJournal.moveDirection(record));
+        int cell = GameJournal.moveCell(record);
+        state.place(cell / BitBoard.ROWS, cell % BitBoard.ROWS, GameJournal.moveExponent(record));
+        moveNumber++;
+
+        if(moveNumber % snapshotInterval == 0) {
+            index.writeLong(moveNumber);
+            index.writeLong(journalOffset);
+            index.writeLong(state.getBoard());
+            index.writeLong(state.getScore());
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            journal.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            journalOffset++;
+        }
+        journal.writeByte((int) value);
+        journalOffset++;
+    }
+}
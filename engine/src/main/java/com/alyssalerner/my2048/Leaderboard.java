@@ -0,0 +1,267 @@
+package com.alyssalerner.my2048;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Every finished game's score, largest tile and number of moves, kept in an append-only log, with
+ * an in-memory index for the best games and the spread of scores.
+ *
+ * Log file:
+ *   header      magic (4 bytes), version (1 byte)
+ *   records     RECORD_SIZE bytes each: end time in ms (8), score (8), moves (4), max exponent (1),
+ *               then a CRC32 of those 21 bytes (4)
+ *
+ * Records are only ever appended, and each carries its own checksum, so a log cut short or garbled
+ * at the end by a crash is still good up to its last whole record; open() cuts off anything after
+ * it. open() streams the log through the index one record at a time rather than loading it, so
+ * memory stays the same however many games it holds. The index is:
+ *   - the best `capacity` games, kept sorted (inserting is a binary search and a short array copy,
+ *     and most games don't qualify once it is full),
+ *   - a Histogram of scores, for percentiles to within about 3%,
+ *   - the number of games by largest tile.
+ * All queries take time proportional to the capacity or to the histogram's fixed bucket count,
+ * never to the number of games. Safe to use from several threads.
+ */
+public class Leaderboard {
+    public static final int MAGIC = 0x53434F52;     // "SCOR"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 1;
+    public static final int RECORD_SIZE = 8 + 8 + 4 + 1 + 4;
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** One finished game. */
+    public static final class Entry {
+        private final long time;
+        private final long score;
+        private final int moves;
+        private final int maxExponent;
+
+        public Entry(long time, long score, int moves, int maxExponent) {
+            this.time = time;
+            this.score = score;
+            this.moves = moves;
+            this.maxExponent = maxExponent;
+        }
+
+        // When the game ended, in System.currentTimeMillis() time
+        public long getTime() {
+            return time;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public int getMoves() {
+            return moves;
+        }
+
+        public int getMaxExponent() {
+            return maxExponent;
+        }
+    }
+
+    private final Entry[] best;             // Highest score first; ties in the order they were played
+    private int bestCount;
+    private final Histogram scores = new Histogram();
+    private final long[] maxTileCounts = new long[GridBoard.MAX_EXPONENT + 1];  // Indexed by exponent
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream file;          // Appends to the log
+    private BufferedOutputStream log;       // Buffers appends to file
+
+    private Leaderboard(int capacity) {
+        best = new Entry[capacity];
+    }
+
+    // Open the log in file, creating it if needed, and build the index from it. A damaged end left
+    // by a crash is cut off. Keeps the `capacity` best games.
+    public static Leaderboard open(File file, int capacity) throws IOException {
+        if(capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        Leaderboard leaderboard = new Leaderboard(capacity);
+        long length = file.isFile()? leaderboard.replay(file) : 0;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if(length == 0) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeByte(VERSION);
+            }
+            else if(raf.length() > length) {
+                raf.setLength(length);
+            }
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+
+        leaderboard.file = new FileOutputStream(file, true);
+        leaderboard.log = new BufferedOutputStream(leaderboard.file, BUFFER_SIZE);
+        return leaderboard;
+    }
+
+    // Add a finished game to the log and the index. The record is buffered: call flush() or sync()
+    // to make sure it is written.
+    public synchronized void record(long score, int maxExponent, int moves) throws IOException {
+        long time = System.currentTimeMillis();
+        encode(time, score, moves, maxExponent);
+        log.write(record);
+        add(time, score, moves, maxExponent);
+    }
+
+    // Hand buffered records to the OS, so they survive the app crashing
+    public synchronized void flush() throws IOException {
+        log.flush();
+    }
+
+    // Write buffered records all the way to the disk, so they survive the device losing power
+    public synchronized void sync() throws IOException {
+        log.flush();
+        file.getFD().sync();
+    }
+
+    public synchronized void close() throws IOException {
+        sync();
+        log.close();
+    }
+
+    // The n best games, best first (fewer if fewer have been played or n exceeds the capacity)
+    public synchronized List<Entry> getBest(int n) {
+        int count = Math.min(n, bestCount);
+        List<Entry> entries = new ArrayList<Entry>(count);
+        for(int i = 0; i < count; i++)
+            entries.add(best[i]);
+        return entries;
+    }
+
+    // Score below which the given fraction (0 to 1) of games fall, to within about 3%
+    public synchronized long getPercentile(double fraction) {
+        return scores.getPercentile(fraction);
+    }
+
+    // Fraction of games that scored less than score, to within about 3% (0 if none were played)
+    public synchronized double getPercentileRank(long score) {
+        long games = scores.getCount();
+        return (games == 0)? 0 : (double) scores.getCountBelow(score) / games;
+    }
+
+    public synchronized long getGames() {
+        return scores.getCount();
+    }
+
+    public synchronized long getMeanScore() {
+        return scores.getMean();
+    }
+
+    // Number of games whose largest tile was exactly 2^exponent
+    public synchronized long getGamesWithMaxTile(int exponent) {
+        return maxTileCounts[exponent];
+    }
+
+    // Number of games that reached a tile of 2^exponent or more
+    public synchronized long getGamesReaching(int exponent) {
+        long games = 0;
+        for(int e = exponent; e < maxTileCounts.length; e++)
+            games += maxTileCounts[e];
+        return games;
+    }
+
+    // Read every whole, intact record into the index. Returns the length of the good part of the
+    // file, or 0 if it doesn't even have a valid header.
+    private long replay(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        try {
+            try {
+                if(in.readInt() != MAGIC)
+                    throw new IOException("Not a score log: " + file);
+                int version = in.readByte();
+                if(version != VERSION)
+                    throw new IOException("Unsupported score log version " + version);
+            } catch(EOFException e) {
+                return 0;       // Crashed while writing the header
+            }
+
+            long length = HEADER_SIZE;
+            while(true) {
+                try {
+                    in.readFully(record);
+                } catch(EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(record, 0, RECORD_SIZE - 4);
+                if((int) crc.getValue() != readInt(record, RECORD_SIZE - 4))
+                    break;
+                add(readLong(record, 0), readLong(record, 8), readInt(record, 16), record[20] & 0xFF);
+                length += RECORD_SIZE;
+            }
+            return length;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void add(long time, long score, int moves, int maxExponent) {
+        scores.record(score);
+        maxTileCounts[maxExponent]++;
+
+        if(bestCount == best.length && score <= best[bestCount - 1].getScore())
+            return;
+        // After any equal scores, so earlier games keep their place
+        int lo = 0;
+        int hi = bestCount;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(best[mid].getScore() >= score) lo = mid + 1;
+            else hi = mid;
+        }
+        int moved = Math.min(bestCount, best.length - 1) - lo;
+        System.arraycopy(best, lo, best, lo + 1, moved);
+        best[lo] = new Entry(time, score, moves, maxExponent);
+        if(bestCount < best.length) bestCount++;
+    }
+
+    private void encode(long time, long score, int moves, int maxExponent) {
+        writeLong(record, 0, time);
+        writeLong(record, 8, score);
+        writeInt(record, 16, moves);
+        record[20] = (byte) maxExponent;
+        crc.reset();
+        crc.update(record, 0, RECORD_SIZE - 4);
+        writeInt(record, RECORD_SIZE - 4, (int) crc.getValue());
+    }
+
+    private static long readLong(byte[] b, int pos) {
+        return ((long) readInt(b, pos) << 32) | (readInt(b, pos + 4) & 0xFFFFFFFFL);
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+
+    private static void writeLong(byte[] b, int pos, long value) {
+        writeInt(b, pos, (int) (value >>> 32));
+        writeInt(b, pos + 4, (int) value);
+    }
+
+    private static void writeInt(byte[] b, int pos, int value) {
+        b[pos] = (byte) (value >>> 24);
+        b[pos + 1] = (byte) (value >>> 16);
+        b[pos + 2] = (byte) (value >>> 8);
+        b[pos + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,224 @@
+package com.alyssalerner.my2048;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Learned evaluation of a packed board: an n-tuple network trained by temporal-difference
+ * learning (see the simulator's Trainer).
+ *
+ * A tuple is a fixed group of 4 cells; the exponents in those cells index a table of 65,536
+ * weights, and the value of a board is the sum of the looked-up weights. Each tuple shape is
+ * placed in all 8 rotations and reflections of the board, all sharing one table, so the network
+ * treats symmetric positions alike and learns from each position 8 times over. With 4 shapes the
+ * weights take 1 MB.
+ *
+ * A network being trained keeps its weights in a float[] which any number of threads update at
+ * once without locking. A trained network is saved to a file in the device's byte order and
+ * memory-mapped read-only for play, with a header like RowTables'.
+ */
+public final class NTupleNetwork {
+    public static final int VERSION = 1;
+    public static final String FILE_NAME = "ntuple-v" + VERSION + ".bin";
+    public static final int NO_MOVE = -1;
+
+    private static final int MAGIC = 0x4E545550;        // "NTUP"
+    private static final int BYTE_ORDER_MARK = 0x01020304;
+    private static final int HEADER_BYTES = 64;
+    private static final int TUPLE_LENGTH = 4;
+    private static final int TABLE_SIZE = 1 << (4 * TUPLE_LENGTH);
+    private static final int SYMMETRIES = 8;
+
+    // Tuple shapes as (row, col) pairs: the outer and second lines, and the corner and edge squares
+    private static final int[][] SHAPES = {
+            {0, 0, 0, 1, 0, 2, 0, 3},
+            {1, 0, 1, 1, 1, 2, 1, 3},
+            {0, 0, 0, 1, 1, 0, 1, 1},
+            {0, 1, 0, 2, 1, 1, 1, 2},
+    };
+    public static final int TABLES = SHAPES.length;
+    public static final int FEATURES = TABLES * SYMMETRIES;  // Weights looked up per board
+
+    private static final int WEIGHT_COUNT = TABLES * TABLE_SIZE;
+    private static final int TOTAL_BYTES = HEADER_BYTES + 4 * WEIGHT_COUNT;
+
+    // Bit shift of every cell of every placed tuple, TUPLE_LENGTH per feature
+    private static final int[] SHIFTS = placeShapes();
+
+    private final FloatBuffer weights;      // What evaluate reads
+    private final float[] array;            // Backs weights while training; null when mapped
+    private long gamesTrained;
+
+    private NTupleNetwork(FloatBuffer weights, float[] array, long gamesTrained) {
+        this.weights = weights;
+        this.array = array;
+        this.gamesTrained = gamesTrained;
+    }
+
+    // A network with every weight zero, ready to train
+    public static NTupleNetwork create() {
+        float[] array = new float[WEIGHT_COUNT];
+        return new NTupleNetwork(FloatBuffer.wrap(array), array, 0);
+    }
+
+    // Map a saved network read-only, for play. The mapping can be shared by any number of threads.
+    public static NTupleNetwork map(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if(in.length() != TOTAL_BYTES)
+                throw new IOException(file + " is not an n-tuple network of this version");
+            // The mapping stays valid after the file is closed
+            ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, TOTAL_BYTES);
+            buffer.order(ByteOrder.nativeOrder());
+            if(!headerMatches(buffer))
+                throw new IOException(file + " is not an n-tuple network of this version");
+
+            ByteBuffer body = buffer.duplicate().order(ByteOrder.nativeOrder());
+            body.position(HEADER_BYTES);
+            return new NTupleNetwork(body.slice().order(ByteOrder.nativeOrder()).asFloatBuffer(), null, buffer.getLong(24));
+        } finally {
+            in.close();
+        }
+    }
+
+    // Load a saved network into memory so that training can go on from it
+    public static NTupleNetwork read(File file) throws IOException {
+        NTupleNetwork mapped = map(file);
+        float[] array = new float[WEIGHT_COUNT];
+        mapped.weights.duplicate().get(array);
+        return new NTupleNetwork(FloatBuffer.wrap(array), array, mapped.gamesTrained);
+    }
+
+    // Write the weights to file, through a temporary file so that a reader never maps a half-written
+    // one. Saving while other threads train gives a copy that is only as consistent as they allow.
+    public void save(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TOTAL_BYTES).order(ByteOrder.nativeOrder());
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, BYTE_ORDER_MARK);
+        buffer.putInt(12, TABLES);
+        buffer.putInt(16, TABLE_SIZE);
+        buffer.putInt(20, TOTAL_BYTES);
+        buffer.putLong(24, gamesTrained);
+        buffer.position(HEADER_BYTES);
+        buffer.asFloatBuffer().put(weights.duplicate());
+        buffer.clear();
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null) dir.mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if(!temp.renameTo(file)) {
+            // Windows won't rename over an existing file
+            file.delete();
+            if(!temp.renameTo(file))
+                throw new IOException("Couldn't rename " + temp + " to " + file);
+        }
+    }
+
+    // Estimated points still to come from the position left after a move (an afterstate)
+    public float evaluate(long board) {
+        float value = 0;
+        int s = 0;
+        for(int t = 0; t < TABLES; t++) {
+            int offset = t * TABLE_SIZE;
+            for(int p = 0; p < SYMMETRIES; p++, s += TUPLE_LENGTH)
+                value += weights.get(offset + index(board, s));
+        }
+        return value;
+    }
+
+    // Add delta to every weight the board looks up. Threads may call this at the same time, and
+    // occasionally lose each other's updates, which learning shrugs off.
+    public void update(long board, float delta) {
+        if(array == null) throw new IllegalStateException("A mapped network can't be trained");
+        int s = 0;
+        for(int t = 0; t < TABLES; t++) {
+            int offset = t * TABLE_SIZE;
+            for(int p = 0; p < SYMMETRIES; p++, s += TUPLE_LENGTH)
+                array[offset + index(board, s)] += delta;
+        }
+    }
+
+    // The move whose points plus the value of the position it leaves are highest, or NO_MOVE if
+    // the game is lost. This is the policy the network is trained for.
+    public int chooseMove(long board) {
+        int best = NO_MOVE;
+        float bestValue = 0;
+        for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+            long moved = BitBoard.move(board, direction);
+            if(moved == board) continue;
+
+            float value = BitBoard.moveScore(board, direction) + evaluate(moved);
+            if(best == NO_MOVE || value > bestValue) {
+                best = direction;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    public boolean isMapped() {
+        return array == null;
+    }
+
+    public long getGamesTrained() {
+        return gamesTrained;
+    }
+
+    public void setGamesTrained(long gamesTrained) {
+        this.gamesTrained = gamesTrained;
+    }
+
+    private static int index(long board, int s) {
+        return (int) ((board >>> SHIFTS[s]) & 0xF)
+                | (int) ((board >>> SHIFTS[s + 1]) & 0xF) << 4
+                | (int) ((board >>> SHIFTS[s + 2]) & 0xF) << 8
+                | (int) ((board >>> SHIFTS[s + 3]) & 0xF) << 12;
+    }
+
+    // Place every shape in each of the 8 symmetries: reflected or not, then rotated 0 to 3 times
+    private static int[] placeShapes() {
+        int[] shifts = new int[FEATURES * TUPLE_LENGTH];
+        int s = 0;
+        for(int[] shape : SHAPES) {
+            for(int p = 0; p < SYMMETRIES; p++) {
+                for(int i = 0; i < TUPLE_LENGTH; i++) {
+                    int row = shape[2 * i];
+                    int col = shape[2 * i + 1];
+                    if(p >= 4) col = BitBoard.ROWS - 1 - col;
+                    for(int turn = 0; turn < p % 4; turn++) {
+                        int r = col;
+                        col = BitBoard.ROWS - 1 - row;
+                        row = r;
+                    }
+                    shifts[s++] = 4 * (BitBoard.ROWS * row + col);
+                }
+            }
+        }
+        return shifts;
+    }
+
+    private static boolean headerMatches(ByteBuffer buffer) {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == BYTE_ORDER_MARK
+                && buffer.getInt(12) == TABLES
+                && buffer.getInt(16) == TABLE_SIZE
+                && buffer.getInt(20) == TOTAL_BYTES;
+    }
+}
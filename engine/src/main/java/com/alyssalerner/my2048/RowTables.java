@@ -0,0 +1,308 @@
+package com.alyssalerner.my2048;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The 65,536-entry row tables behind BitBoard and Heuristic: the result of sliding a row left or
+ * right, the points it earns, its largest tile, and its heuristic score.
+ *
+ * Building them takes a noticeable part of startup on a phone, so they are built once, written to
+ * a file, and from then on memory-mapped read-only: loading is then just a header check, and the
+ * pages are shared by every process that maps the file. All tables live in one buffer in the
+ * device's byte order, behind a header holding a version, the byte order and a fingerprint of the
+ * heuristic weights; a file that doesn't match is rebuilt. Without a directory (see setDirectory),
+ * or when the file can't be used, the tables are computed in memory instead.
+ */
+public final class RowTables {
+    public static final int VERSION = 1;
+    public static final String FILE_NAME = "row-tables-v" + VERSION + ".bin";
+
+    private static final int MAGIC = 0x32303438;        // "2048"
+    private static final int BYTE_ORDER_MARK = 0x01020304;
+    private static final int TABLE_SIZE = 1 << 16;
+
+    // Layout of the file: a header, then the tables with the widest entries first so all are aligned
+    private static final int HEADER_BYTES = 64;
+    private static final int ROW_SCORE_OFFSET = HEADER_BYTES;
+    private static final int ROW_HEURISTIC_OFFSET = ROW_SCORE_OFFSET + 4 * TABLE_SIZE;
+    private static final int ROW_LEFT_OFFSET = ROW_HEURISTIC_OFFSET + 4 * TABLE_SIZE;
+    private static final int ROW_RIGHT_OFFSET = ROW_LEFT_OFFSET + 2 * TABLE_SIZE;
+    private static final int ROW_MAX_OFFSET = ROW_RIGHT_OFFSET + 2 * TABLE_SIZE;
+    private static final int TOTAL_BYTES = ROW_MAX_OFFSET + TABLE_SIZE;
+
+    // On the JVM (simulator, benchmarks) the directory can also be given with -Dmy2048.tables=<dir>
+    private static volatile File directory = (System.getProperty("my2048.tables") != null)? new File(System.getProperty("my2048.tables")) : null;
+
+    private final ByteBuffer buffer;    // Header and all the tables, which are views of it
+    private final CharBuffer rowLeft;
+    private final CharBuffer rowRight;
+    private final IntBuffer rowScore;
+    private final ByteBuffer rowMax;
+    private final FloatBuffer rowHeuristic;
+    private final boolean mapped;
+    private final long loadNanos;
+
+    private RowTables(ByteBuffer buffer, boolean mapped, long loadNanos) {
+        this.buffer = buffer;
+        rowScore = section(buffer, ROW_SCORE_OFFSET, 4 * TABLE_SIZE).asIntBuffer();
+        rowHeuristic = section(buffer, ROW_HEURISTIC_OFFSET, 4 * TABLE_SIZE).asFloatBuffer();
+        rowLeft = section(buffer, ROW_LEFT_OFFSET, 2 * TABLE_SIZE).asCharBuffer();
+        rowRight = section(buffer, ROW_RIGHT_OFFSET, 2 * TABLE_SIZE).asCharBuffer();
+        rowMax = section(buffer, ROW_MAX_OFFSET, TABLE_SIZE);
+        this.mapped = mapped;
+        this.loadNanos = loadNanos;
+    }
+
+    // Keep the tables file in dir (created if needed). Only has an effect if called before the
+    // tables are first used, i.e. before BitBoard or Heuristic is touched.
+    public static void setDirectory(File dir) {
+        directory = dir;
+    }
+
+    // The tables used by the engine, loaded or built on first use
+    public static RowTables get() {
+        return Holder.TABLES;
+    }
+
+    private static class Holder {
+        static final RowTables TABLES = load(directory);
+    }
+
+    // Map the tables from dir, writing the file first if it is missing or out of date.
+    // A null dir, or a file that can't be written, means the tables are only computed.
+    public static RowTables load(File dir) {
+        if(dir == null) return compute();
+
+        File file = new File(dir, FILE_NAME);
+        try {
+            RowTables tables = map(file);
+            if(tables != null) return tables;
+        } catch(IOException e) { e.printStackTrace(); }
+
+        RowTables tables = compute();
+        try {
+            write(tables, dir, file);
+        } catch(IOException e) { e.printStackTrace(); }
+        return tables;
+    }
+
+    // Map an existing file read-only. Returns null if it is missing or doesn't match this version.
+    public static RowTables map(File file) throws IOException {
+        long start = System.nanoTime();
+        if(!file.isFile() || file.length() != TOTAL_BYTES) return null;
+
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, TOTAL_BYTES);
+            buffer.order(ByteOrder.nativeOrder());
+            if(!headerMatches(buffer)) return null;
+            return new RowTables(buffer, true, System.nanoTime() - start);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Build the tables in memory
+    public static RowTables compute() {
+        long start = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate(TOTAL_BYTES).order(ByteOrder.nativeOrder());
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, BYTE_ORDER_MARK);
+        buffer.putInt(12, TABLE_SIZE);
+        buffer.putInt(16, fingerprint());
+        buffer.putInt(20, TOTAL_BYTES);
+
+        int[] cells = new int[BitBoard.ROWS];
+        for(int row = 0; row < TABLE_SIZE; row++) {
+            int max = 0;
+            for(int c = 0; c < BitBoard.ROWS; c++) {
+                cells[c] = (row >> (4 * c)) & 0xF;
+                max = Math.max(max, cells[c]);
+            }
+            buffer.put(ROW_MAX_OFFSET + row, (byte) max);
+            buffer.putFloat(ROW_HEURISTIC_OFFSET + 4 * row, scoreRow(cells));
+
+            buffer.putInt(ROW_SCORE_OFFSET + 4 * row, slideCellsLeft(cells));
+            int left = packRow(cells);
+            buffer.putChar(ROW_LEFT_OFFSET + 2 * row, (char) left);
+            buffer.putChar(ROW_RIGHT_OFFSET + 2 * reverseRow(row), (char) reverseRow(left));
+        }
+        return new RowTables(buffer.asReadOnlyBuffer().order(ByteOrder.nativeOrder()), false, System.nanoTime() - start);
+    }
+
+    // Row after sliding left (towards column 0) or right, indexed by the packed row
+    public CharBuffer getRowLeft() {
+        return rowLeft;
+    }
+
+    public CharBuffer getRowRight() {
+        return rowRight;
+    }
+
+    // Points earned by merges when sliding a row (the same in both directions)
+    public IntBuffer getRowScore() {
+        return rowScore;
+    }
+
+    // Largest exponent in a row
+    public ByteBuffer getRowMax() {
+        return rowMax;
+    }
+
+    // Heuristic score of a row (see Heuristic)
+    public FloatBuffer getRowHeuristic() {
+        return rowHeuristic;
+    }
+
+    // True if the tables were mapped from a file rather than computed
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    // How long mapping or computing the tables took
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    // Write to a temporary file and rename it, so another process never maps a half-written file
+    private static void write(RowTables tables, File dir, File file) throws IOException {
+        dir.mkdirs();
+        File temp = new File(dir, FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            ByteBuffer all = tables.buffer.duplicate();
+            all.clear();
+            FileChannel channel = out.getChannel();
+            while(all.hasRemaining())
+                channel.write(all);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if(!temp.renameTo(file))
+            throw new IOException("Couldn't rename " + temp + " to " + file);
+    }
+
+    private static boolean headerMatches(ByteBuffer buffer) {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == BYTE_ORDER_MARK
+                && buffer.getInt(12) == TABLE_SIZE
+                && buffer.getInt(16) == fingerprint()
+                && buffer.getInt(20) == TOTAL_BYTES;
+    }
+
+    // Changes whenever the heuristic's weights do, so that old files are rebuilt
+    private static int fingerprint() {
+        float[] weights = {
+                Heuristic.LOST_PENALTY, Heuristic.MONOTONICITY_POWER, Heuristic.MONOTONICITY_WEIGHT,
+                Heuristic.SUM_POWER, Heuristic.SUM_WEIGHT, Heuristic.MERGES_WEIGHT, Heuristic.EMPTY_WEIGHT
+        };
+        int hash = BitBoard.MAX_EXPONENT;
+        for(float weight : weights)
+            hash = 31 * hash + Float.floatToIntBits(weight);
+        return hash;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.position(offset);
+        copy.limit(offset + length);
+        return copy.slice().order(buffer.order());
+    }
+
+    // Slide and merge the cells towards index 0 in place, returning the points earned
+    private static int slideCellsLeft(int[] cells) {
+        int score = 0;
+        int target = 0;         // Next free position
+        int pending = 0;        // Exponent waiting at target-1 that may still merge
+
+        for(int c = 0; c < BitBoard.ROWS; c++) {
+            int e = cells[c];
+            if(e == 0) continue;
+
+            if(pending != 0 && pending == e && e < BitBoard.MAX_EXPONENT) {
+                cells[target - 1] = e + 1;
+                score += 1 << (e + 1);
+                pending = 0;    // A merged tile can't merge again on the same slide
+            }
+            else {
+                cells[target++] = e;
+                pending = e;
+            }
+        }
+        for(int c = target; c < BitBoard.ROWS; c++)
+            cells[c] = 0;
+        return score;
+    }
+
+    private static int packRow(int[] cells) {
+        int row = 0;
+        for(int c = 0; c < BitBoard.ROWS; c++)
+            row |= cells[c] << (4 * c);
+        return row;
+    }
+
+    private static int reverseRow(int row) {
+        return ((row & 0xF) << 12) | ((row & 0xF0) << 4) | ((row >> 4) & 0xF0) | ((row >> 12) & 0xF);
+    }
+
+    // Heuristic score of one row: rewards empty cells and possible merges, penalises rows that are
+    // not monotonic or that hold a lot of large tiles
+    private static float scoreRow(int[] cells) {
+        float sum = 0;
+        int empty = 0;
+        int merges = 0;
+        int previous = 0;
+        int counter = 0;    // Length of the current run of equal tiles
+
+        for(int c = 0; c < cells.length; c++) {
+            int e = cells[c];
+            sum += (float) Math.pow(e, Heuristic.SUM_POWER);
+            if(e == 0) {
+                empty++;
+            }
+            else {
+                if(previous == e) {
+                    counter++;
+                }
+                else if(counter > 0) {
+                    merges += 1 + counter;
+                    counter = 0;
+                }
+                previous = e;
+            }
+        }
+        if(counter > 0)
+            merges += 1 + counter;
+
+        // How far the row is from increasing towards either end
+        float monotonicityLeft = 0;
+        float monotonicityRight = 0;
+        for(int c = 1; c < cells.length; c++) {
+            float a = (float) Math.pow(cells[c - 1], Heuristic.MONOTONICITY_POWER);
+            float b = (float) Math.pow(cells[c], Heuristic.MONOTONICITY_POWER);
+            if(cells[c - 1] > cells[c])
+                monotonicityLeft += a - b;
+            else
+                monotonicityRight += b - a;
+        }
+
+        return Heuristic.LOST_PENALTY
+                + Heuristic.EMPTY_WEIGHT * empty
+                + Heuristic.MERGES_WEIGHT * merges
+                - Heuristic.MONOTONICITY_WEIGHT * Math.min(monotonicityLeft, monotonicityRight)
+                - Heuristic.SUM_WEIGHT * sum;
+    }
+}
@@ -0,0 +1,67 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Bounded, lock-free queue of ints for exactly one producer thread and one consumer thread.
+ *
+ * The producer only writes tail and the consumer only writes head, so neither side ever blocks or
+ * allocates: offer() fails when the queue is full and poll() returns a caller-chosen value when it
+ * is empty. A group of values offered together becomes visible to the consumer all at once.
+ */
+public final class SpscIntQueue {
+    private final int[] buffer;
+    private final int mask;
+    private volatile long head;     // Next position to read, written by the consumer
+    private volatile long tail;     // Next position to write, written by the producer
+
+    // capacity is rounded up to a power of two
+    public SpscIntQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        buffer = new int[size];
+        mask = size - 1;
+    }
+
+    // Producer only. Returns false if the queue is full.
+    public boolean offer(int value) {
+        long t = tail;
+        if(t - head >= buffer.length) return false;
+        buffer[(int) t & mask] = value;
+        tail = t + 1;
+        return true;
+    }
+
+    // Producer only. Adds the first count values as one group, or nothing if they don't all fit.
+    public boolean offer(int[] values, int count) {
+        long t = tail;
+        if(t + count - head > buffer.length) return false;
+        for(int i = 0; i < count; i++)
+            buffer[(int) (t + i) & mask] = values[i];
+        tail = t + count;
+        return true;
+    }
+
+    // Consumer only. Returns the oldest value, or emptyValue if there is none.
+    public int poll(int emptyValue) {
+        long h = head;
+        if(h == tail) return emptyValue;
+        int value = buffer[(int) h & mask];
+        head = h + 1;
+        return value;
+    }
+
+    // Consumer only. Drop everything that has been offered so far.
+    public void clear() {
+        head = tail;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,180 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Compact, versioned binary encoding of a game, used to save and restore it.
+ *
+ * Version 1 layout:
+ *   byte 0      format version
+ *   byte 1      flags (FLAG_SCORE, FLAG_RANDOM)
+ *   bytes 2-9   packed board (see BitBoard), big-endian
+ *   varint      score, if FLAG_SCORE
+ *   8 bytes     GameRandom state, if FLAG_RANDOM
+ *
+ * A 4x4 game with score and generator state takes about 20 bytes.
+ *
+ * Version 2 (GridBoard games that don't fit version 1: other sizes, or tiles above 32768):
+ *   byte 0      format version
+ *   byte 1      flags
+ *   byte 2      board size n
+ *   n*n bytes   tile exponents, row by row
+ *   varint      score, if FLAG_SCORE
+ *   8 bytes     GameRandom state, if FLAG_RANDOM
+ */
+public final class StateCodec {
+    public static final int VERSION = 1;
+    public static final int GRID_VERSION = 2;
+
+    private static final int FLAG_SCORE = 1;
+    private static final int FLAG_RANDOM = 2;
+    private static final int HEADER_SIZE = 2;
+    private static final int MAX_SIZE = HEADER_SIZE + 8 + 10 + 8;
+    private static final int GRID_HEADER_SIZE = 3;
+    private static final int GRID_MAX_SIZE = GRID_HEADER_SIZE + GridBoard.MAX_SIZE * GridBoard.MAX_SIZE + 10 + 8;
+
+    private StateCodec() {}
+
+    // Encode the game, and the generator if it isn't null (so that a restored game spawns the same tiles)
+    public static byte[] encode(GameState state, GameRandom rand) {
+        byte[] buffer = new byte[MAX_SIZE];
+        int flags = FLAG_SCORE | ((rand != null)? FLAG_RANDOM : 0);
+
+        buffer[0] = (byte) VERSION;
+        buffer[1] = (byte) flags;
+        int pos = writeLong(buffer, HEADER_SIZE, state.getBoard());
+        return finish(buffer, pos, state.getScore(), rand);
+    }
+
+    // Encode a game of any size. 4x4 games that fit a BitBoard use version 1, so they stay as small as before.
+    public static byte[] encode(GridBoard grid, GameRandom rand) {
+        int flags = FLAG_SCORE | ((rand != null)? FLAG_RANDOM : 0);
+        if(grid.fitsBitBoard()) {
+            byte[] buffer = new byte[MAX_SIZE];
+            buffer[0] = (byte) VERSION;
+            buffer[1] = (byte) flags;
+            int pos = writeLong(buffer, HEADER_SIZE, grid.toBitBoard());
+            return finish(buffer, pos, grid.getScore(), rand);
+        }
+
+        int size = grid.getSize();
+        byte[] buffer = new byte[GRID_MAX_SIZE];
+        buffer[0] = (byte) GRID_VERSION;
+        buffer[1] = (byte) flags;
+        buffer[2] = (byte) size;
+        int pos = GRID_HEADER_SIZE;
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++)
+                buffer[pos++] = (byte) grid.getExponent(r, c);
+        return finish(buffer, pos, grid.getScore(), rand);
+    }
+
+    // Board size of an encoded game, so that a GridBoard of the right size can be made to decode it into
+    public static int boardSize(byte[] data) {
+        if(data != null && data.length > GRID_HEADER_SIZE && data[0] == GRID_VERSION)
+            return data[2];
+        return BitBoard.ROWS;
+    }
+
+    // Restore the game into state, and the generator into rand if it was saved and rand isn't null
+    public static void decode(byte[] data, GameState state, GameRandom rand) {
+        checkVersion(data, VERSION);
+        long board = readLong(data, HEADER_SIZE);
+        long score = readTail(data, HEADER_SIZE + 8, rand);
+        state.reset(board, score);
+    }
+
+    // Restore a game of either version into grid, which must be of the saved size (see boardSize)
+    public static void decode(byte[] data, GridBoard grid, GameRandom rand) {
+        if(data != null && data.length > 0 && data[0] == VERSION) {
+            checkVersion(data, VERSION);
+            long board = readLong(data, HEADER_SIZE);
+            long score = readTail(data, HEADER_SIZE + 8, rand);
+            grid.resetFromBitBoard(board, score);
+            return;
+        }
+
+        checkVersion(data, GRID_VERSION);
+        int size = data[2];
+        if(size != grid.getSize())
+            throw new IllegalArgumentException("Saved game is " + size + "x" + size + ", board is " + grid.getSize() + "x" + grid.getSize());
+        if(data.length < GRID_HEADER_SIZE + size * size)
+            throw new IllegalArgumentException("Saved state is truncated");
+
+        long[] rows = new long[size];
+        int pos = GRID_HEADER_SIZE;
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++)
+                rows[r] |= (long) (data[pos++] & 0xFF) << (8 * c);
+        long score = readTail(data, pos, rand);
+        grid.reset(rows, score);
+    }
+
+    private static void checkVersion(byte[] data, int version) {
+        int minLength = (version == VERSION)? HEADER_SIZE + 8 : GRID_HEADER_SIZE;
+        if(data == null || data.length < minLength)
+            throw new IllegalArgumentException("Saved state is too short");
+        if(data[0] != version)
+            throw new IllegalArgumentException("Unsupported saved state version " + data[0]);
+    }
+
+    // Write the score and generator after the board, and trim the buffer to what was used
+    private static byte[] finish(byte[] buffer, int pos, long score, GameRandom rand) {
+        pos = writeVarLong(buffer, pos, score);
+        if(rand != null)
+            pos = writeLong(buffer, pos, rand.getState());
+
+        byte[] encoded = new byte[pos];
+        System.arraycopy(buffer, 0, encoded, 0, pos);
+        return encoded;
+    }
+
+    // Read the score and generator that follow the board at pos, returning the score
+    private static long readTail(byte[] data, int pos, GameRandom rand) {
+        int flags = data[1];
+
+        long score = 0;
+        if((flags & FLAG_SCORE) != 0) {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if(pos >= data.length)
+                    throw new IllegalArgumentException("Saved state is truncated");
+                b = data[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            score = result;
+        }
+
+        if((flags & FLAG_RANDOM) != 0) {
+            if(pos + 8 > data.length)
+                throw new IllegalArgumentException("Saved state is truncated");
+            if(rand != null)
+                rand.setState(readLong(data, pos));
+        }
+        return score;
+    }
+
+    private static int writeLong(byte[] buffer, int pos, long value) {
+        for(int i = 7; i >= 0; i--)
+            buffer[pos++] = (byte) (value >>> (8 * i));
+        return pos;
+    }
+
+    private static long readLong(byte[] data, int pos) {
+        long value = 0;
+        for(int i = 0; i < 8; i++)
+            value = (value << 8) | (data[pos + i] & 0xFF);
+        return value;
+    }
+
+    // 7 bits per byte, low bits first, high bit set on every byte but the last
+    private static int writeVarLong(byte[] buffer, int pos, long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,85 @@
+package com.alyssalerner.my2048;
+
+/**
+ * The 8 rotations and reflections of a packed 4x4 board (see BitBoard), and a canonical form that
+ * all 8 images of a position share, so caches can store one entry per position instead of 8.
+ *
+ * A symmetry is a number from 0 to 7: bit TRANSPOSE swaps rows and columns first, then bit
+ * MIRROR_COLUMNS reverses the order of the columns and bit MIRROR_ROWS the order of the rows. Each
+ * step is a handful of masked shifts on the whole board, with no loop over cells. Moves carry over
+ * between a board and its image with mapDirection: moving the image in the mapped direction gives
+ * the image of the moved board, with the same score.
+ */
+public final class Symmetry {
+    public static final int IDENTITY = 0;
+    public static final int MIRROR_COLUMNS = 1;
+    public static final int MIRROR_ROWS = 2;
+    public static final int TRANSPOSE = 4;
+    public static final int COUNT = 8;
+
+    // Direction codes after a transpose, indexed by BitBoard direction: right <-> down, left <-> up
+    private static final int[] TRANSPOSED = {BitBoard.DOWN, BitBoard.UP, BitBoard.LEFT, BitBoard.RIGHT};
+
+    private Symmetry() {}
+
+    // The board's image under the given symmetry
+    public static long apply(long board, int symmetry) {
+        if((symmetry & TRANSPOSE) != 0) board = BitBoard.transpose(board);
+        if((symmetry & MIRROR_COLUMNS) != 0) board = mirrorColumns(board);
+        if((symmetry & MIRROR_ROWS) != 0) board = mirrorRows(board);
+        return board;
+    }
+
+    // The symmetry that undoes the given one
+    public static int inverse(int symmetry) {
+        // Mirroring then transposing is transposing then mirroring the other way
+        if((symmetry & TRANSPOSE) == 0) return symmetry;
+        return TRANSPOSE | ((symmetry & MIRROR_COLUMNS) << 1) | ((symmetry & MIRROR_ROWS) >>> 1);
+    }
+
+    // The smallest of the board's 8 images, the same for all of them
+    public static long canonical(long board) {
+        long t = BitBoard.transpose(board);
+        long c = mirrorColumns(board);
+        long tc = mirrorColumns(t);
+        long min = Math.min(Math.min(board, c), Math.min(t, tc));
+        min = Math.min(min, Math.min(mirrorRows(board), mirrorRows(c)));
+        return Math.min(min, Math.min(mirrorRows(t), mirrorRows(tc)));
+    }
+
+    // A symmetry that takes the board to canonical(board)
+    public static int canonicalSymmetry(long board) {
+        int best = IDENTITY;
+        long min = board;
+        for(int s = 1; s < COUNT; s++) {
+            long image = apply(board, s);
+            if(image < min) {
+                min = image;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    // The direction on apply(board, symmetry) that matches moving board in the given direction.
+    // Use inverse(symmetry) to map a direction on the image back to the board.
+    public static int mapDirection(int direction, int symmetry) {
+        if(direction < 0 || direction >= BitBoard.N_DIRECTIONS) return direction;
+        if((symmetry & TRANSPOSE) != 0) direction = TRANSPOSED[direction];
+        if((symmetry & MIRROR_COLUMNS) != 0 && direction <= BitBoard.LEFT) direction ^= 1;   // Right <-> left
+        if((symmetry & MIRROR_ROWS) != 0 && direction >= BitBoard.UP) direction ^= 1;        // Up <-> down
+        return direction;
+    }
+
+    // Reverse the cells of every row: swap neighbouring nibbles, then neighbouring bytes
+    public static long mirrorColumns(long x) {
+        x = ((x & 0x0F0F0F0F0F0F0F0FL) << 4) | ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+        return ((x & 0x00FF00FF00FF00FFL) << 8) | ((x >>> 8) & 0x00FF00FF00FF00FFL);
+    }
+
+    // Reverse the order of the rows: swap neighbouring 16-bit rows, then the two halves
+    public static long mirrorRows(long x) {
+        x = ((x & 0x0000FFFF0000FFFFL) << 16) | ((x >>> 16) & 0x0000FFFF0000FFFFL);
+        return (x << 32) | (x >>> 32);
+    }
+}
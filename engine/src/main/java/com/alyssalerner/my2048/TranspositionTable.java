@@ -0,0 +1,64 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Fixed-size cache of evaluated positions that can be shared by several search threads.
+ *
+ * Entries are two parallel primitive arrays, so the table never grows and never allocates after
+ * construction. Threads read and write without locks: each slot stores the key XORed with its data,
+ * so a slot that was torn by two concurrent writers simply fails the key check and is treated as a
+ * miss. A newer entry always replaces an older one in the same slot.
+ */
+public class TranspositionTable {
+    public static final float MISS = Float.NaN;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    // Table holds 2^bits entries (16 bytes each)
+    public TranspositionTable(int bits) {
+        if(bits < 1 || bits > 30)
+            throw new IllegalArgumentException("bits must be between 1 and 30: " + bits);
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    // Return the stored score if it was searched to at least the given depth, or MISS
+    public float get(long board, int depth) {
+        int slot = slot(board);
+        long d = data[slot];
+        if((keys[slot] ^ d) != board || (int) (d & 0xFF) < depth)
+            return MISS;
+        return Float.intBitsToFloat((int) (d >>> 32));
+    }
+
+    public void put(long board, int depth, float score) {
+        int slot = slot(board);
+        long d = ((long) Float.floatToRawIntBits(score) << 32) | (depth & 0xFF);
+        keys[slot] = board ^ d;
+        data[slot] = d;
+    }
+
+    public void clear() {
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            data[i] = 0;
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(long board) {
+        // 64-bit finalizer from MurmurHash3, so that similar boards spread across the table
+        long h = board;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
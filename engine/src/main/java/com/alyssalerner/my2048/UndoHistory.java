@@ -0,0 +1,90 @@
+package com.alyssalerner.my2048;
+
+/**
+ * Bounded undo/redo history of packed game states.
+ *
+ * Positions are kept in a ring of primitive arrays (the board's packed rows, score and spawn
+ * generator state), so recording, undoing and redoing are O(1) and never allocate. Once the ring
+ * is full, recording a new position forgets the oldest one.
+ */
+public class UndoHistory {
+    private final int rowsPerPosition;
+    private final long[] rows;      // rowsPerPosition longs for each slot
+    private final long[] scores;
+    private final long[] randomStates;
+
+    // Positions are numbered from the start of the game; only those in [oldest, newest] are still stored
+    private long oldest;
+    private long current;
+    private long newest;
+
+    // Keeps up to capacity positions of a board packed into rowsPerPosition longs (see GridBoard.copyRows)
+    public UndoHistory(int capacity, int rowsPerPosition) {
+        if(capacity < 2)
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        this.rowsPerPosition = rowsPerPosition;
+        rows = new long[capacity * rowsPerPosition];
+        scores = new long[capacity];
+        randomStates = new long[capacity];
+        clear();
+    }
+
+    // Forget everything. The next record() becomes the only position.
+    public void clear() {
+        oldest = 0;
+        current = -1;
+        newest = -1;
+    }
+
+    // Add a new current position, dropping anything that could have been redone
+    public void record(long[] board, long score, long randomState) {
+        current++;
+        newest = current;
+        if(newest - oldest >= scores.length)
+            oldest++;
+
+        int slot = slot(current);
+        System.arraycopy(board, 0, rows, slot * rowsPerPosition, rowsPerPosition);
+        scores[slot] = score;
+        randomStates[slot] = randomState;
+    }
+
+    public boolean canUndo() {
+        return current > oldest;
+    }
+
+    public boolean canRedo() {
+        return current < newest;
+    }
+
+    // Step back to the previous position. Returns false if there is none.
+    public boolean undo() {
+        if(!canUndo()) return false;
+        current--;
+        return true;
+    }
+
+    // Step forward to the position that was last undone. Returns false if there is none.
+    public boolean redo() {
+        if(!canRedo()) return false;
+        current++;
+        return true;
+    }
+
+    // Copy the current position's rows into the given array
+    public void copyBoard(long[] into) {
+        System.arraycopy(rows, slot(current) * rowsPerPosition, into, 0, rowsPerPosition);
+    }
+
+    public long getScore() {
+        return scores[slot(current)];
+    }
+
+    public long getRandomState() {
+        return randomStates[slot(current)];
+    }
+
+    private int slot(long position) {
+        return (int) (position % scores.length);
+    }
+}
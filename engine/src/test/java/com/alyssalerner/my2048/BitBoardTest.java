@@ -0,0 +1,78 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitBoardTest {
+    // A 4x4 board from 16 exponents, row by row
+    static long board(int... exponents) {
+        long board = 0;
+        for(int cell = 0; cell < BitBoard.CELLS; cell++)
+            board = BitBoard.setExponent(board, cell / BitBoard.ROWS, cell % BitBoard.ROWS, exponents[cell]);
+        return board;
+    }
+
+    // Positions from seeded random games, at every stage of the game
+    static long[] positions(int count, long seed) {
+        GameRandom rand = new GameRandom(seed);
+        long[] boards = new long[count];
+        int n = 0;
+        while(n < count) {
+            long board = BitBoard.spawn(BitBoard.spawn(0, rand), rand);
+            while(n < count && BitBoard.canMove(board)) {
+                boards[n++] = board;
+                long moved = BitBoard.move(board, rand.nextInt(BitBoard.N_DIRECTIONS));
+                if(moved != board)
+                    board = BitBoard.spawn(moved, rand);
+            }
+        }
+        return boards;
+    }
+
+    @Test
+    public void move_mergesEachTileOnce() {
+        // 2 2 4 8 left: the new 4 doesn't merge again with the 4 next to it
+        long board = board(1, 1, 2, 3,  0, 0, 0, 0,  0, 0, 0, 0,  0, 0, 0, 0);
+        assertEquals(board(2, 2, 3, 0,  0, 0, 0, 0,  0, 0, 0, 0,  0, 0, 0, 0), BitBoard.move(board, BitBoard.LEFT));
+        assertEquals(4, BitBoard.moveScore(board, BitBoard.LEFT));
+        assertEquals(board(0, 2, 2, 3,  0, 0, 0, 0,  0, 0, 0, 0,  0, 0, 0, 0), BitBoard.move(board, BitBoard.RIGHT));
+
+        // 4 4 4 4 makes two 8s, packed towards the side moved to
+        board = board(0, 0, 0, 2,  0, 0, 0, 2,  0, 0, 0, 2,  0, 0, 0, 2);
+        assertEquals(board(0, 0, 0, 3,  0, 0, 0, 3,  0, 0, 0, 0,  0, 0, 0, 0), BitBoard.move(board, BitBoard.UP));
+        assertEquals(board(0, 0, 0, 0,  0, 0, 0, 0,  0, 0, 0, 3,  0, 0, 0, 3), BitBoard.move(board, BitBoard.DOWN));
+        assertEquals(16, BitBoard.moveScore(board, BitBoard.UP));
+    }
+
+    @Test
+    public void move_matchesGridBoard() {
+        GridBoard grid = new GridBoard(BitBoard.ROWS);
+        for(long board : positions(20000, 1)) {
+            for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                grid.resetFromBitBoard(board, 0);
+                boolean moved = grid.move(direction);
+
+                assertEquals(moved, BitBoard.canMove(board, direction));
+                assertEquals(grid.toBitBoard(), BitBoard.move(board, direction));
+                assertEquals(grid.getScore(), BitBoard.moveScore(board, direction));
+            }
+            grid.resetFromBitBoard(board, 0);
+            assertEquals(grid.movesAvailable(), BitBoard.canMove(board));
+        }
+    }
+
+    @Test
+    public void canMove_fullBoard() {
+        long stuck = board(1, 2, 1, 2,  2, 1, 2, 1,  1, 2, 1, 2,  2, 1, 2, 1);
+        assertFalse(BitBoard.canMove(stuck));
+        for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++)
+            assertFalse(BitBoard.canMove(stuck, direction));
+
+        // One equal pair, in a column
+        long pair = board(1, 2, 3, 4,  1, 6, 7, 8,  9, 10, 11, 12,  13, 14, 15, 1);
+        assertTrue(BitBoard.canMove(pair));
+        assertTrue(BitBoard.canMove(pair, BitBoard.UP));
+        assertFalse(BitBoard.canMove(pair, BitBoard.LEFT));
+    }
+}
@@ -0,0 +1,95 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JournalReaderTest {
+    private static final int SNAPSHOT_INTERVAL = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Play a seeded game into a journal and return the board after every move (index 0 is the start)
+    private List<Long> writeGame(File file) throws IOException {
+        GameRandom rand = new GameRandom(11);
+        GameState state = new GameState();
+        state.spawn(rand);
+        state.spawn(rand);
+        List<Long> boards = new ArrayList<Long>();
+        boards.add(state.getBoard());
+
+        JournalWriter writer = new JournalWriter(file, state.getBoard(), state.getScore(), SNAPSHOT_INTERVAL);
+        while(state.movesAvailable()) {
+            int direction = rand.nextInt(BitBoard.N_DIRECTIONS);
+            if(!state.move(direction)) continue;
+            int cell = state.spawn(rand);
+            writer.recordMove(direction, cell, BitBoard.getExponent(state.getBoard(), cell / BitBoard.ROWS, cell % BitBoard.ROWS));
+            boards.add(state.getBoard());
+        }
+        writer.close();
+        return boards;
+    }
+
+    @Test
+    public void wholeJournal_replaysEveryMove() throws IOException {
+        File file = folder.newFile("game.journal");
+        List<Long> boards = writeGame(file);
+
+        JournalReader reader = new JournalReader(file);
+        try {
+            while(reader.next())
+                assertEquals((long) boards.get((int) reader.getMoveNumber()), reader.getState().getBoard());
+            assertEquals(boards.size() - 1, reader.getMoveNumber());
+
+            // Back to the middle through the index
+            assertTrue(reader.seek(boards.size() / 2));
+            assertEquals((long) boards.get(boards.size() / 2), reader.getState().getBoard());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void truncatedJournal_stopsAtLastWholeRecord() throws IOException {
+        File file = folder.newFile("game.journal");
+        List<Long> boards = writeGame(file);
+        int moves = boards.size() - 1;
+        assertTrue("game too short to test", moves > 4 * SNAPSHOT_INTERVAL);
+
+        // Cut the journal off partway into its last records, leaving index entries beyond the end
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 2 * SNAPSHOT_INTERVAL - 1);
+        raf.close();
+
+        JournalReader reader = new JournalReader(file);
+        try {
+            while(reader.next()) { }
+            long last = reader.getMoveNumber();
+            assertTrue(last < moves);
+            assertTrue(last > 0);
+            assertEquals((long) boards.get((int) last), reader.getState().getBoard());
+
+            // Seeking past the end stops there; seeking before it still works
+            assertFalse(reader.seek(moves));
+            assertTrue(reader.seek(last / 2));
+            assertEquals((long) boards.get((int) (last / 2)), reader.getState().getBoard());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAJournal_isRejected() throws IOException {
+        File file = folder.newFile("empty.journal");
+        new JournalReader(file);
+    }
+}
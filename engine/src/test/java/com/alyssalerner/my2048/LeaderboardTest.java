@@ -0,0 +1,87 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LeaderboardTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void record(File file, long... scores) throws IOException {
+        Leaderboard leaderboard = Leaderboard.open(file, 2);
+        for(long score : scores)
+            leaderboard.record(score, 11, 100);
+        leaderboard.close();
+    }
+
+    @Test
+    public void reopen_keepsBestGames() throws IOException {
+        File file = new File(folder.getRoot(), "scores.log");
+        record(file, 100, 300, 200);
+        record(file, 250);
+
+        Leaderboard leaderboard = Leaderboard.open(file, 2);
+        List<Leaderboard.Entry> best = leaderboard.getBest(5);
+        assertEquals(2, best.size());
+        assertEquals(300, best.get(0).getScore());
+        assertEquals(250, best.get(1).getScore());
+        assertEquals(4, leaderboard.getGames());
+        assertEquals(4, leaderboard.getGamesWithMaxTile(11));
+        assertEquals(0, leaderboard.getGamesReaching(12));
+        leaderboard.close();
+    }
+
+    @Test
+    public void tornRecord_isCutOff() throws IOException {
+        File file = new File(folder.getRoot(), "scores.log");
+        record(file, 100, 300, 200);
+        long whole = file.length();
+        assertEquals(Leaderboard.HEADER_SIZE + 3 * Leaderboard.RECORD_SIZE, whole);
+
+        // A crash partway through writing a fourth record
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[Leaderboard.RECORD_SIZE / 2]);
+        out.close();
+
+        Leaderboard leaderboard = Leaderboard.open(file, 2);
+        assertEquals(3, leaderboard.getGames());
+        assertEquals(whole, file.length());
+        leaderboard.record(400, 12, 100);
+        leaderboard.close();
+
+        leaderboard = Leaderboard.open(file, 2);
+        assertEquals(4, leaderboard.getGames());
+        assertEquals(400, leaderboard.getBest(1).get(0).getScore());
+        leaderboard.close();
+    }
+
+    @Test
+    public void garbledRecord_endsTheLog() throws IOException {
+        File file = new File(folder.getRoot(), "scores.log");
+        record(file, 100, 300, 200);
+
+        // Flip a bit in the last record's score, so its checksum no longer matches
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        long pos = Leaderboard.HEADER_SIZE + 2 * Leaderboard.RECORD_SIZE + 15;
+        raf.seek(pos);
+        int b = raf.read();
+        raf.seek(pos);
+        raf.write(b ^ 1);
+        raf.close();
+
+        Leaderboard leaderboard = Leaderboard.open(file, 2);
+        assertEquals(2, leaderboard.getGames());
+        assertEquals(300, leaderboard.getBest(1).get(0).getScore());
+        assertEquals(Leaderboard.HEADER_SIZE + 2 * Leaderboard.RECORD_SIZE, file.length());
+        leaderboard.close();
+    }
+}
@@ -0,0 +1,89 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StateCodecTest {
+    @Test
+    public void bitBoardGame_roundTripsAsVersion1() {
+        GameRandom rand = new GameRandom(7);
+        GameState state = new GameState();
+        state.spawn(rand);
+        state.spawn(rand);
+        while(state.movesAvailable()) {
+            int direction = rand.nextInt(BitBoard.N_DIRECTIONS);
+            if(state.move(direction))
+                state.spawn(rand);
+        }
+
+        byte[] data = StateCodec.encode(state, rand);
+        assertEquals(StateCodec.VERSION, data[0]);
+        assertEquals(BitBoard.ROWS, StateCodec.boardSize(data));
+
+        GameState restored = new GameState();
+        GameRandom restoredRand = new GameRandom();
+        StateCodec.decode(data, restored, restoredRand);
+        assertEquals(state.getBoard(), restored.getBoard());
+        assertEquals(state.getScore(), restored.getScore());
+        assertEquals(rand.getState(), restoredRand.getState());
+
+        // A GridBoard reads version 1 too
+        GridBoard grid = new GridBoard(BitBoard.ROWS);
+        StateCodec.decode(data, grid, null);
+        assertEquals(state.getBoard(), grid.toBitBoard());
+        assertEquals(state.getScore(), grid.getScore());
+    }
+
+    @Test
+    public void gridGame_roundTripsAsVersion2() {
+        GridBoard grid = new GridBoard(5);
+        grid.place(0, 0, 200);     // Far beyond a BitBoard's tiles
+        grid.place(4, 3, 1);
+        grid.place(2, 2, 17);
+        grid.reset(rowsOf(grid), 1L << 40);
+        GameRandom rand = new GameRandom(3);
+
+        byte[] data = StateCodec.encode(grid, rand);
+        assertEquals(StateCodec.GRID_VERSION, data[0]);
+        assertEquals(5, StateCodec.boardSize(data));
+
+        GridBoard restored = new GridBoard(StateCodec.boardSize(data));
+        GameRandom restoredRand = new GameRandom();
+        StateCodec.decode(data, restored, restoredRand);
+        for(int r = 0; r < 5; r++)
+            for(int c = 0; c < 5; c++)
+                assertEquals(grid.getExponent(r, c), restored.getExponent(r, c));
+        assertEquals(1L << 40, restored.getScore());
+        assertEquals(200, restored.getMaxExponent());
+        assertEquals(rand.getState(), restoredRand.getState());
+    }
+
+    @Test
+    public void fourByFourWithLargeTile_usesVersion2() {
+        GridBoard grid = new GridBoard(BitBoard.ROWS);
+        grid.place(1, 1, BitBoard.MAX_EXPONENT + 1);
+        byte[] data = StateCodec.encode(grid, null);
+        assertEquals(StateCodec.GRID_VERSION, data[0]);
+
+        GridBoard restored = new GridBoard(BitBoard.ROWS);
+        StateCodec.decode(data, restored, null);
+        assertEquals(BitBoard.MAX_EXPONENT + 1, restored.getExponent(1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated_isRejected() {
+        GridBoard grid = new GridBoard(BitBoard.ROWS);
+        grid.place(0, 0, 1);
+        byte[] data = StateCodec.encode(grid, new GameRandom(1));
+        byte[] cut = new byte[data.length - 3];
+        System.arraycopy(data, 0, cut, 0, cut.length);
+        StateCodec.decode(cut, new GameState(), new GameRandom());
+    }
+
+    private static long[] rowsOf(GridBoard grid) {
+        long[] rows = new long[grid.getSize()];
+        grid.copyRows(rows);
+        return rows;
+    }
+}
@@ -0,0 +1,59 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SymmetryTest {
+    @Test
+    public void mapDirection_carriesMovesToTheImage() {
+        for(long board : BitBoardTest.positions(5000, 2)) {
+            for(int s = 0; s < Symmetry.COUNT; s++) {
+                long image = Symmetry.apply(board, s);
+                for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                    int mapped = Symmetry.mapDirection(direction, s);
+                    assertEquals(Symmetry.apply(BitBoard.move(board, direction), s), BitBoard.move(image, mapped));
+                    assertEquals(BitBoard.moveScore(board, direction), BitBoard.moveScore(image, mapped));
+                    assertEquals(direction, Symmetry.mapDirection(mapped, Symmetry.inverse(s)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mapDirection_leavesNonDirectionsAlone() {
+        assertEquals(-1, Symmetry.mapDirection(-1, Symmetry.TRANSPOSE));
+        assertEquals(BitBoard.N_DIRECTIONS, Symmetry.mapDirection(BitBoard.N_DIRECTIONS, Symmetry.MIRROR_COLUMNS));
+    }
+
+    @Test
+    public void apply_isUndoneByInverse() {
+        for(long board : BitBoardTest.positions(2000, 3)) {
+            for(int s = 0; s < Symmetry.COUNT; s++)
+                assertEquals(board, Symmetry.apply(Symmetry.apply(board, s), Symmetry.inverse(s)));
+        }
+    }
+
+    @Test
+    public void apply_movesCellsAsDescribed() {
+        long board = BitBoard.setExponent(0, 0, 1, 5);      // One tile at row 0, column 1
+        assertEquals(5, BitBoard.getExponent(Symmetry.apply(board, Symmetry.MIRROR_COLUMNS), 0, 2));
+        assertEquals(5, BitBoard.getExponent(Symmetry.apply(board, Symmetry.MIRROR_ROWS), 3, 1));
+        assertEquals(5, BitBoard.getExponent(Symmetry.apply(board, Symmetry.TRANSPOSE), 1, 0));
+        // Transposed first, then both mirrors
+        assertEquals(5, BitBoard.getExponent(Symmetry.apply(board, Symmetry.COUNT - 1), 2, 3));
+    }
+
+    @Test
+    public void canonical_isSharedByAllImages() {
+        for(long board : BitBoardTest.positions(2000, 4)) {
+            long canonical = Symmetry.canonical(board);
+            assertEquals(canonical, Symmetry.apply(board, Symmetry.canonicalSymmetry(board)));
+            for(int s = 0; s < Symmetry.COUNT; s++) {
+                long image = Symmetry.apply(board, s);
+                assertEquals(canonical, Symmetry.canonical(image));
+                assertTrue(canonical <= image);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.alyssalerner.my2048;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UndoHistoryTest {
+    private final long[] rows = new long[2];
+
+    private void record(UndoHistory history, long position) {
+        rows[0] = position;
+        rows[1] = ~position;
+        history.record(rows, position * 10, position * 100);
+    }
+
+    private void assertAt(UndoHistory history, long position) {
+        history.copyBoard(rows);
+        assertEquals(position, rows[0]);
+        assertEquals(~position, rows[1]);
+        assertEquals(position * 10, history.getScore());
+        assertEquals(position * 100, history.getRandomState());
+    }
+
+    @Test
+    public void full_forgetsOldestPositions() {
+        UndoHistory history = new UndoHistory(3, 2);
+        for(long position = 1; position <= 7; position++)
+            record(history, position);
+
+        // Only the last 3 positions are left, in slots that have wrapped around twice
+        assertAt(history, 7);
+        assertTrue(history.undo());
+        assertAt(history, 6);
+        assertTrue(history.undo());
+        assertAt(history, 5);
+        assertFalse(history.undo());
+        assertAt(history, 5);
+
+        assertTrue(history.redo());
+        assertTrue(history.redo());
+        assertAt(history, 7);
+        assertFalse(history.redo());
+    }
+
+    @Test
+    public void record_dropsRedo() {
+        UndoHistory history = new UndoHistory(4, 2);
+        record(history, 1);
+        record(history, 2);
+        record(history, 3);
+        history.undo();
+        history.undo();
+        record(history, 4);
+
+        assertFalse(history.canRedo());
+        assertAt(history, 4);
+        assertTrue(history.undo());
+        assertAt(history, 1);
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void clear_leavesNothingToUndo() {
+        UndoHistory history = new UndoHistory(2, 2);
+        record(history, 1);
+        record(history, 2);
+        history.clear();
+        record(history, 3);
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+        assertAt(history, 3);
+    }
+}
@@ -0,0 +1,253 @@
+package com.alyssalerner.my2048.server;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GridBoard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts games for any number of clients over a line-based text protocol on a local socket.
+ *
+ * Usage: GameServer [--port P] [--stripes N] [--idle-seconds S] [--seed S]
+ *
+ * Commands, one per line, each answered by one line that starts with OK or ERR:
+ *   NEW [size] [seed]     OK <id>                      start a game (size 3 to 8, default 4)
+ *   MOVE <id> <R|L|U|D>   OK <moved> <score> <over>    moved and over are 0 or 1
+ *   BOARD <id>            OK <size> <score> <e> ...    tile exponents row by row, 0 for empty
+ *   END <id>              OK                           forget the game
+ *   STATS                 OK <live> <evicted>          sessions in memory and evicted
+ *   QUIT                                               close the connection
+ *
+ * Each connection gets its own thread: a virtual thread on Java 21 and later, so thousands of
+ * connections cost little. Clients may send many commands without waiting for the answers; the
+ * answers are buffered and written together once every command received so far is answered.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 2048;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final String DIRECTIONS = "RLUD";    // Indexed by BitBoard direction code
+
+    private final SessionStore store;
+    private final ExecutorService connections = newThreadPerTaskExecutor("connection");
+    private final ScheduledExecutorService evictor;
+    private volatile boolean running = true;
+
+    // Serve the games in store, evicting idle ones every evictEveryNanos
+    public GameServer(final SessionStore store, long evictEveryNanos) {
+        this.store = store;
+        evictor = Executors.newSingleThreadScheduledExecutor(daemonThreads("evictor"));
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                store.evictIdle(System.nanoTime());
+            }
+        }, evictEveryNanos, evictEveryNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Accept connections until the socket is closed or shutdown() is called
+    public void serve(ServerSocket server) throws IOException {
+        while(running) {
+            final Socket socket = server.accept();
+            socket.setTcpNoDelay(true);
+            connections.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handle(socket);
+                    } catch(IOException e) {
+                        // The client went away
+                    } finally {
+                        try { socket.close(); } catch(IOException e) { }
+                    }
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        evictor.shutdownNow();
+        connections.shutdownNow();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII), BUFFER_SIZE);
+        Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), ASCII), BUFFER_SIZE);
+        Connection connection = new Connection();
+
+        String line;
+        while((line = in.readLine()) != null) {
+            if(line.equals("QUIT")) break;
+            connection.execute(line);
+            out.append(connection.reply).append('\n');
+            // Answer a whole pipelined batch with one write
+            if(!in.ready())
+                out.flush();
+        }
+        out.flush();
+    }
+
+    // The state of one client's connection, reused for every command it sends
+    private class Connection {
+        final StringBuilder reply = new StringBuilder();
+        int direction;
+
+        private final SessionStore.Action move = new SessionStore.Action() {
+            @Override
+            public void apply(Session session) {
+                boolean moved = session.move(direction);
+                reply.append("OK ").append(moved? 1 : 0).append(' ').append(session.getScore())
+                        .append(' ').append(session.isOver()? 1 : 0);
+            }
+        };
+
+        private final SessionStore.Action describe = new SessionStore.Action() {
+            @Override
+            public void apply(Session session) {
+                GridBoard grid = session.getGrid();
+                int size = grid.getSize();
+                reply.append("OK ").append(size).append(' ').append(session.getScore());
+                for(int r = 0; r < size; r++)
+                    for(int c = 0; c < size; c++)
+                        reply.append(' ').append(grid.getExponent(r, c));
+            }
+        };
+
+        void execute(String line) {
+            reply.setLength(0);
+            String[] words = line.trim().split(" +");
+            try {
+                String command = words[0];
+                if(command.equals("MOVE")) {
+                    expect(words, 3);
+                    direction = (words[2].length() == 1)? DIRECTIONS.indexOf(words[2].charAt(0)) : -1;
+                    if(direction < 0) throw new IllegalArgumentException("direction must be one of R, L, U, D");
+                    if(!store.with(Long.parseLong(words[1]), move)) noSession(words[1]);
+                }
+                else if(command.equals("NEW")) {
+                    if(words.length > 3) throw new IllegalArgumentException("usage: NEW [size] [seed]");
+                    int size = (words.length > 1)? Integer.parseInt(words[1]) : BitBoard.ROWS;
+                    Long seed = (words.length > 2)? Long.valueOf(words[2]) : null;
+                    reply.append("OK ").append(store.create(size, seed));
+                }
+                else if(command.equals("BOARD")) {
+                    expect(words, 2);
+                    if(!store.with(Long.parseLong(words[1]), describe)) noSession(words[1]);
+                }
+                else if(command.equals("END")) {
+                    expect(words, 2);
+                    if(store.remove(Long.parseLong(words[1]))) reply.append("OK");
+                    else noSession(words[1]);
+                }
+                else if(command.equals("STATS")) {
+                    reply.append("OK ").append(store.getLiveCount()).append(' ').append(store.getEvictedCount());
+                }
+                else {
+                    reply.append("ERR unknown command ").append(command);
+                }
+            } catch(IllegalArgumentException e) {
+                // Also bad numbers (NumberFormatException) and board sizes
+                reply.setLength(0);
+                reply.append("ERR ").append(e.getMessage());
+            }
+        }
+
+        private void noSession(String id) {
+            reply.setLength(0);
+            reply.append("ERR no session ").append(id);
+        }
+
+        private void expect(String[] words, int count) {
+            if(words.length != count)
+                throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " argument" + ((count == 2)? "" : "s"));
+        }
+    }
+
+    // One new thread per task: virtual threads where the JVM has them (Java 21 and later), found by
+    // reflection so the module still builds for Java 7, and otherwise a cached pool of daemon threads
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch(NoSuchMethodException e) {
+            // Older JVM
+        } catch(ReflectiveOperationException e) {
+            e.printStackTrace();
+        }
+        return Executors.newCachedThreadPool(daemonThreads(name));
+    }
+
+    public static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch(NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int stripes = 4 * Runtime.getRuntime().availableProcessors();
+        long idleSeconds = 60;
+        long seed = System.nanoTime();
+
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+
+            if(arg.equals("--port")) port = Integer.parseInt(value);
+            else if(arg.equals("--stripes")) stripes = Integer.parseInt(value);
+            else if(arg.equals("--idle-seconds")) idleSeconds = Long.parseLong(value);
+            else if(arg.equals("--seed")) seed = Long.parseLong(value);
+            else usage("unknown option " + arg);
+        }
+
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        SessionStore store = new SessionStore(stripes, idleNanos, seed);
+        GameServer server = new GameServer(store, Math.max(1, idleNanos / 4));
+
+        // Local clients only
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        System.out.printf("serving on %s with %d stripes, %s threads, evicting after %d s%n", socket.getLocalSocketAddress(),
+                stripes, hasVirtualThreads()? "virtual" : "platform", idleSeconds);
+        server.serve(socket);
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: GameServer [--port P] [--stripes N] [--idle-seconds S] [--seed S]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,203 @@
+package com.alyssalerner.my2048.server;
+
+import com.alyssalerner.my2048.GameRandom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Plays random moves against a GameServer from many connections at once and reports the moves
+ * per second and the latency percentiles.
+ *
+ * Usage: LoadGenerator [--port P] [--clients C] [--sessions S] [--moves M] [--pipeline N] [--size N]
+ *
+ * Each client opens one connection and S games, then sends M moves spread over its games, N at a
+ * time without waiting for the answers. A move's latency is from sending its batch to reading its
+ * answer. A game that ends is replaced by a new one.
+ */
+public class LoadGenerator {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String DIRECTIONS = "RLUD";
+
+    private final int port;
+    private final int sessions;
+    private final int moves;
+    private final int pipeline;
+    private final int size;
+
+    public LoadGenerator(int port, int sessions, int moves, int pipeline, int size) {
+        this.port = port;
+        this.sessions = sessions;
+        this.moves = moves;
+        this.pipeline = pipeline;
+        this.size = size;
+    }
+
+    // Run the clients together and return every move's latency, in nanoseconds
+    public long[] run(int clients) throws InterruptedException {
+        ExecutorService threads = GameServer.newThreadPerTaskExecutor("client");
+        List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+        for(int c = 0; c < clients; c++) {
+            final long seed = c;
+            results.add(threads.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws IOException {
+                    return playClient(seed);
+                }
+            }));
+        }
+
+        long[] all = new long[clients * moves];
+        int n = 0;
+        try {
+            for(Future<long[]> result : results) {
+                long[] latencies = result.get();
+                System.arraycopy(latencies, 0, all, n, latencies.length);
+                n += latencies.length;
+            }
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+        return all;
+    }
+
+    private long[] playClient(long seed) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), ASCII));
+            GameRandom rand = new GameRandom(seed);
+            long[] latencies = new long[moves];
+            long[] ids = new long[sessions];
+            int[] batch = new int[pipeline];    // Which game each move of the batch went to
+            boolean[] over = new boolean[sessions];
+
+            for(int s = 0; s < sessions; s++)
+                ids[s] = newGame(in, out);
+
+            int next = 0;
+            int sent = 0;
+            while(sent < moves) {
+                int count = Math.min(pipeline, moves - sent);
+                for(int i = 0; i < count; i++) {
+                    batch[i] = next;
+                    next = (next + 1) % sessions;
+                    out.append("MOVE ").append(Long.toString(ids[batch[i]])).append(' ')
+                            .append(DIRECTIONS.charAt(rand.nextInt(DIRECTIONS.length()))).append('\n');
+                }
+                long start = System.nanoTime();
+                out.flush();
+
+                boolean anyOver = false;
+                for(int i = 0; i < count; i++) {
+                    String reply = check(in.readLine());
+                    latencies[sent + i] = System.nanoTime() - start;
+                    if(reply.endsWith(" 1")) {
+                        over[batch[i]] = true;
+                        anyOver = true;
+                    }
+                }
+                sent += count;
+
+                // Replace finished games between batches, outside the timings
+                if(anyOver) {
+                    for(int s = 0; s < sessions; s++) {
+                        if(!over[s]) continue;
+                        over[s] = false;
+                        out.append("END ").append(Long.toString(ids[s])).append('\n');
+                        out.flush();
+                        check(in.readLine());
+                        ids[s] = newGame(in, out);
+                    }
+                }
+            }
+
+            for(int s = 0; s < sessions; s++)
+                out.append("END ").append(Long.toString(ids[s])).append('\n');
+            out.append("QUIT\n");
+            out.flush();
+            return latencies;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private long newGame(BufferedReader in, Writer out) throws IOException {
+        out.append("NEW ").append(Integer.toString(size)).append('\n');
+        out.flush();
+        return Long.parseLong(check(in.readLine()).substring(3));
+    }
+
+    private static String check(String reply) throws IOException {
+        if(reply == null) throw new IOException("server closed the connection");
+        if(!reply.startsWith("OK")) throw new IOException("server replied " + reply);
+        return reply;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = GameServer.DEFAULT_PORT;
+        int clients = 1000;
+        int sessions = 4;
+        int moves = 2000;
+        int pipeline = 1;
+        int size = 4;
+
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+
+            if(arg.equals("--port")) port = Integer.parseInt(value);
+            else if(arg.equals("--clients")) clients = Integer.parseInt(value);
+            else if(arg.equals("--sessions")) sessions = Integer.parseInt(value);
+            else if(arg.equals("--moves")) moves = Integer.parseInt(value);
+            else if(arg.equals("--pipeline")) pipeline = Integer.parseInt(value);
+            else if(arg.equals("--size")) size = Integer.parseInt(value);
+            else usage("unknown option " + arg);
+        }
+
+        System.out.printf("%d clients with %d games each, %d moves per client in batches of %d, %s threads%n",
+                clients, sessions, moves, pipeline, GameServer.hasVirtualThreads()? "virtual" : "platform");
+        long start = System.nanoTime();
+        long[] latencies = new LoadGenerator(port, sessions, moves, pipeline, size).run(clients);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("moves            %d%n", latencies.length);
+        System.out.printf("moves/sec        %.0f%n", latencies.length / seconds);
+        System.out.printf("latency p50      %.1f us%n", percentile(latencies, 0.5) / 1e3);
+        System.out.printf("latency p90      %.1f us%n", percentile(latencies, 0.9) / 1e3);
+        System.out.printf("latency p99      %.1f us%n", percentile(latencies, 0.99) / 1e3);
+        System.out.printf("latency p99.9    %.1f us%n", percentile(latencies, 0.999) / 1e3);
+        System.out.printf("latency max      %.1f us%n", latencies[latencies.length - 1] / 1e3);
+    }
+
+    // Value below which the given fraction of the sorted values fall
+    private static long percentile(long[] sorted, double fraction) {
+        int i = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: LoadGenerator [--port P] [--clients C] [--sessions S] [--moves M] [--pipeline N] [--size N]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,48 @@
+package com.alyssalerner.my2048.server;
+
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GridBoard;
+
+/**
+ * One game hosted by the server. Only used while the SessionStore holds its stripe's lock, so it
+ * needs no locking of its own.
+ */
+public final class Session {
+    private final long id;
+    private final GridBoard grid;
+    private final GameRandom rand;
+    long lastUsed;                  // System.nanoTime() of the last command, for eviction
+
+    Session(long id, GridBoard grid, GameRandom rand) {
+        this.id = id;
+        this.grid = grid;
+        this.rand = rand;
+    }
+
+    // Make a move and spawn the next tile, as Board does. Returns false if the move isn't legal.
+    public boolean move(int direction) {
+        if(!grid.move(direction)) return false;
+        grid.spawn(rand);
+        return true;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public GridBoard getGrid() {
+        return grid;
+    }
+
+    public GameRandom getRandom() {
+        return rand;
+    }
+
+    public long getScore() {
+        return grid.getScore();
+    }
+
+    public boolean isOver() {
+        return !grid.movesAvailable();
+    }
+}
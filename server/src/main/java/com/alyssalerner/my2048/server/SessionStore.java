@@ -0,0 +1,165 @@
+package com.alyssalerner.my2048.server;
+
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GridBoard;
+import com.alyssalerner.my2048.StateCodec;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * All the server's games, split by id into stripes that each have their own map and lock, so that
+ * connections playing different games rarely wait for each other.
+ *
+ * A command runs on its session with the stripe locked (see with()), which is held for well under
+ * a microsecond. The locks are ReentrantLocks rather than synchronized blocks because a virtual
+ * thread waiting to enter a monitor holds on to its carrier thread. Sessions that go unused for
+ * the idle time are evicted to their StateCodec encoding (about 20 bytes for a 4x4 game) and
+ * decoded again the next time they are used.
+ */
+public class SessionStore {
+    public interface Action {
+        // Called with the session's stripe locked
+        void apply(Session session);
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final HashMap<Long, Session> live = new HashMap<Long, Session>();
+        final HashMap<Long, byte[]> evicted = new HashMap<Long, byte[]>();
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final long idleNanos;
+    private final long seed;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger liveCount = new AtomicInteger();
+    private final AtomicInteger evictedCount = new AtomicInteger();
+
+    // stripeCount is rounded up to a power of two. New games without a seed of their own use
+    // stream <id> of seed.
+    public SessionStore(int stripeCount, long idleNanos, long seed) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new Stripe[n];
+        for(int i = 0; i < n; i++)
+            stripes[i] = new Stripe();
+        mask = n - 1;
+        this.idleNanos = idleNanos;
+        this.seed = seed;
+    }
+
+    // Start a game of the given size with two tiles and return its id. A seed of null picks one.
+    public long create(int size, Long gameSeed) {
+        long id = nextId.getAndIncrement();
+        GameRandom rand = new GameRandom();
+        if(gameSeed != null) rand.setSeed(gameSeed);
+        else rand.setSeed(seed, id);
+
+        GridBoard grid = new GridBoard(size);
+        grid.spawn(rand);
+        grid.spawn(rand);
+        Session session = new Session(id, grid, rand);
+        session.lastUsed = System.nanoTime();
+
+        Stripe stripe = stripe(id);
+        stripe.lock.lock();
+        try {
+            stripe.live.put(id, session);
+        } finally {
+            stripe.lock.unlock();
+        }
+        liveCount.incrementAndGet();
+        return id;
+    }
+
+    // Run action on the session with the given id, restoring it first if it was evicted.
+    // Returns false if there is no such session.
+    public boolean with(long id, Action action) {
+        Stripe stripe = stripe(id);
+        stripe.lock.lock();
+        try {
+            Session session = stripe.live.get(id);
+            if(session == null) {
+                byte[] data = stripe.evicted.remove(id);
+                if(data == null) return false;
+                session = restore(id, data);
+                stripe.live.put(id, session);
+                evictedCount.decrementAndGet();
+                liveCount.incrementAndGet();
+            }
+            session.lastUsed = System.nanoTime();
+            action.apply(session);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // End a game. Returns false if there is no such session.
+    public boolean remove(long id) {
+        Stripe stripe = stripe(id);
+        stripe.lock.lock();
+        try {
+            if(stripe.live.remove(id) != null) {
+                liveCount.decrementAndGet();
+                return true;
+            }
+            if(stripe.evicted.remove(id) != null) {
+                evictedCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Encode every session unused since before now - idle time. Each stripe is locked in turn, so
+    // play carries on in the others. Returns how many were evicted.
+    public int evictIdle(long now) {
+        int count = 0;
+        for(Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<Map.Entry<Long, Session>> it = stripe.live.entrySet().iterator();
+                while(it.hasNext()) {
+                    Session session = it.next().getValue();
+                    if(now - session.lastUsed < idleNanos) continue;
+                    stripe.evicted.put(session.getId(), StateCodec.encode(session.getGrid(), session.getRandom()));
+                    it.remove();
+                    count++;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        liveCount.addAndGet(-count);
+        evictedCount.addAndGet(count);
+        return count;
+    }
+
+    public int getLiveCount() {
+        return liveCount.get();
+    }
+
+    public int getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    private static Session restore(long id, byte[] data) {
+        GridBoard grid = new GridBoard(StateCodec.boardSize(data));
+        GameRandom rand = new GameRandom();
+        StateCodec.decode(data, grid, rand);
+        return new Session(id, grid, rand);
+    }
+
+    // Consecutive ids land in different stripes
+    private Stripe stripe(long id) {
+        return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask];
+    }
+}
@@ -0,0 +1,58 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+
+/**
+ * The rules as BitBoard plays them with its row tables, for 4x4 boards with no tile above 32768.
+ */
+final class BitBoardRules implements Rules {
+    private long board;
+    private long score;
+
+    @Override
+    public String getName() {
+        return "bitboard";
+    }
+
+    @Override
+    public boolean canHold(int size, int maxExponent) {
+        return size == BitBoard.ROWS && maxExponent <= BitBoard.MAX_EXPONENT;
+    }
+
+    @Override
+    public void load(int size, int[] cells, long score) {
+        board = 0;
+        for(int cell = 0; cell < BitBoard.CELLS; cell++)
+            board = BitBoard.setExponent(board, cell / BitBoard.ROWS, cell % BitBoard.ROWS, cells[cell]);
+        this.score = score;
+    }
+
+    @Override
+    public void place(int cell, int exponent) {
+        board = BitBoard.setExponent(board, cell / BitBoard.ROWS, cell % BitBoard.ROWS, exponent);
+    }
+
+    @Override
+    public boolean move(int direction) {
+        long after = BitBoard.move(board, direction);
+        if(after == board) return false;
+        score += BitBoard.moveScore(board, direction);
+        board = after;
+        return true;
+    }
+
+    @Override
+    public int getExponent(int cell) {
+        return BitBoard.getExponent(board, cell / BitBoard.ROWS, cell % BitBoard.ROWS);
+    }
+
+    @Override
+    public long getScore() {
+        return score;
+    }
+
+    @Override
+    public String checkConsistency() {
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+
+import java.io.PrintStream;
+
+/**
+ * Running totals over finished games. Each worker keeps its own and they are merged at the end,
+ * so recording a game never contends with other threads.
+ */
+public class GameStats {
+    private long games;
+    private long moves;
+    private long scoreSum;
+    private double scoreSquareSum;
+    private long minScore = Long.MAX_VALUE;
+    private long maxScore;
+    private final long[] maxTileCounts = new long[BitBoard.MAX_EXPONENT + 1]; // Indexed by exponent
+
+    public void record(long score, int moveCount, int maxExponent) {
+        games++;
+        moves += moveCount;
+        scoreSum += score;
+        scoreSquareSum += (double) score * score;
+        minScore = Math.min(minScore, score);
+        maxScore = Math.max(maxScore, score);
+        maxTileCounts[maxExponent]++;
+    }
+
+    public void add(GameStats other) {
+        games += other.games;
+        moves += other.moves;
+        scoreSum += other.scoreSum;
+        scoreSquareSum += other.scoreSquareSum;
+        minScore = Math.min(minScore, other.minScore);
+        maxScore = Math.max(maxScore, other.maxScore);
+        for(int e = 0; e < maxTileCounts.length; e++)
+            maxTileCounts[e] += other.maxTileCounts[e];
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    public double meanScore() {
+        return (games == 0)? 0 : (double) scoreSum / games;
+    }
+
+    public double scoreStandardDeviation() {
+        if(games == 0) return 0;
+        double mean = meanScore();
+        return Math.sqrt(Math.max(0, scoreSquareSum / games - mean * mean));
+    }
+
+    public void print(PrintStream out, double seconds) {
+        out.printf("games            %d%n", games);
+        out.printf("games/sec        %.1f%n", games / seconds);
+        out.printf("moves/sec        %.0f%n", moves / seconds);
+        out.printf("moves/game       %.1f%n", (games == 0)? 0.0 : (double) moves / games);
+        out.printf("score mean       %.1f (sd %.1f)%n", meanScore(), scoreStandardDeviation());
+        out.printf("score min/max    %d / %d%n", (games == 0)? 0 : minScore, maxScore);
+        out.println("max tile distribution:");
+
+        long atLeast = 0;
+        for(int e = maxTileCounts.length - 1; e > 0; e--) {
+            atLeast += maxTileCounts[e];
+            if(maxTileCounts[e] == 0) continue;
+            out.printf("  %6d  %10d  %6.2f%%  (reached by %6.2f%%)%n", BitBoard.valueOf(e), maxTileCounts[e],
+                    100.0 * maxTileCounts[e] / games, 100.0 * atLeast / games);
+        }
+    }
+}
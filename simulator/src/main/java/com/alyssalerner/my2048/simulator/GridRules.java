@@ -0,0 +1,79 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GridBoard;
+
+/**
+ * The rules as GridBoard plays them, which is what Board uses to decide every move. Also checks
+ * the counts that GridBoard keeps up to date instead of recounting.
+ */
+final class GridRules implements Rules {
+    private GridBoard grid;
+    private final long[] rows = new long[GridBoard.MAX_SIZE];
+
+    @Override
+    public String getName() {
+        return "grid";
+    }
+
+    @Override
+    public boolean canHold(int size, int maxExponent) {
+        return size >= GridBoard.MIN_SIZE && size <= GridBoard.MAX_SIZE && maxExponent <= GridBoard.MAX_EXPONENT;
+    }
+
+    @Override
+    public void load(int size, int[] cells, long score) {
+        if(grid == null || grid.getSize() != size)
+            grid = new GridBoard(size);
+        for(int r = 0; r < size; r++) {
+            rows[r] = 0;
+            for(int c = 0; c < size; c++)
+                rows[r] |= (long) cells[r * size + c] << (8 * c);
+        }
+        grid.reset(rows, score);
+    }
+
+    @Override
+    public void place(int cell, int exponent) {
+        grid.place(cell / grid.getSize(), cell % grid.getSize(), exponent);
+    }
+
+    @Override
+    public boolean move(int direction) {
+        return grid.move(direction);
+    }
+
+    @Override
+    public int getExponent(int cell) {
+        return grid.getExponent(cell / grid.getSize(), cell % grid.getSize());
+    }
+
+    @Override
+    public long getScore() {
+        return grid.getScore();
+    }
+
+    @Override
+    public String checkConsistency() {
+        int size = grid.getSize();
+        int empty = 0;
+        int max = 0;
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++) {
+                int exponent = grid.getExponent(r, c);
+                if(exponent == 0) empty++;
+                max = Math.max(max, exponent);
+            }
+        boolean movesAvailable = false;
+        for(int direction = 0; direction < BitBoard.N_DIRECTIONS && !movesAvailable; direction++)
+            movesAvailable = grid.canMove(direction);
+
+        if(grid.getEmptyCount() != empty)
+            return "counts " + grid.getEmptyCount() + " empty cells, not " + empty;
+        if(grid.getMaxExponent() != max)
+            return "gives the largest tile as " + GridBoard.valueOf(grid.getMaxExponent()) + ", not " + GridBoard.valueOf(max);
+        if(grid.movesAvailable() != movesAvailable)
+            return "says a move is " + (movesAvailable? "not " : "") + "available";
+        return null;
+    }
+}
@@ -0,0 +1,361 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GridBoard;
+
+/**
+ * The rules as Board plays them on its Tile objects (simpleSlide*, merge*, mergeInto and
+ * copy*ToBoard), ported line for line without the Android drawing so that they run off the device.
+ * As on screen, a merged pair keeps its old value until the move is over and is then replaced by
+ * one tile of twice the value. Keep this in step with Board whenever its sliding code changes.
+ */
+final class LegacyRules implements Rules {
+    // The parts of a Tile that the sliding code uses
+    private static final class Tile {
+        int exponent;
+        int row;
+        int col;
+        Tile mergeTwin;
+        int startRow;       // Where the tile was before the move
+        int startCol;
+    }
+
+    private int size;
+    private Tile[][] board;
+    private Tile[] tiles;           // The tiles on the board, including both halves of a merge
+    private int tileCount;
+    private Tile[] lineBuffer;
+    private int[] cells;            // Cells after the last move
+    private long score;
+    private String problem;
+
+    @Override
+    public String getName() {
+        return "legacy";
+    }
+
+    @Override
+    public boolean canHold(int size, int maxExponent) {
+        return size >= GridBoard.MIN_SIZE && size <= GridBoard.MAX_SIZE && maxExponent <= GridBoard.MAX_EXPONENT;
+    }
+
+    @Override
+    public void load(int size, int[] cells, long score) {
+        if(size != this.size) {
+            this.size = size;
+            board = new Tile[size][size];
+            tiles = new Tile[size * size];
+            for(int i = 0; i < tiles.length; i++)
+                tiles[i] = new Tile();
+            lineBuffer = new Tile[size];
+            this.cells = new int[size * size];
+        }
+        System.arraycopy(cells, 0, this.cells, 0, size * size);
+        this.score = score;
+        addTilesFromCells();
+    }
+
+    @Override
+    public void place(int cell, int exponent) {
+        Tile tile = tiles[tileCount++];
+        tile.exponent = exponent;
+        tile.row = cell / size;
+        tile.col = cell % size;
+        tile.mergeTwin = null;
+        board[tile.row][tile.col] = tile;
+        cells[cell] = exponent;
+    }
+
+    @Override
+    public boolean move(int direction) {
+        problem = null;
+        for(int i = 0; i < tileCount; i++) {
+            tiles[i].startRow = tiles[i].row;
+            tiles[i].startCol = tiles[i].col;
+        }
+
+        switch(direction) {
+            case BitBoard.RIGHT:
+                simpleSlideRight();
+                mergeRight();
+                simpleSlideRight();
+                break;
+            case BitBoard.LEFT:
+                simpleSlideLeft();
+                mergeLeft();
+                simpleSlideLeft();
+                break;
+            case BitBoard.UP:
+                simpleSlideUp();
+                mergeUp();
+                simpleSlideUp();
+                break;
+            case BitBoard.DOWN:
+                simpleSlideDown();
+                mergeDown();
+                simpleSlideDown();
+                break;
+            default:
+                throw new IllegalArgumentException("Not a direction: " + direction);
+        }
+
+        boolean moved = false;
+        for(int i = 0; i < tileCount; i++) {
+            Tile t = tiles[i];
+            if(t.row != t.startRow || t.col != t.startCol || t.mergeTwin != null)
+                moved = true;
+        }
+        if(!moved) return false;
+
+        checkTiles();
+        replaceMergedTiles();
+        return true;
+    }
+
+    @Override
+    public int getExponent(int cell) {
+        return cells[cell];
+    }
+
+    @Override
+    public long getScore() {
+        return score;
+    }
+
+    @Override
+    public String checkConsistency() {
+        return problem;
+    }
+
+    // Every tile must end up on its cell of the board, or on the cell of the tile it merges with
+    // (the animation slides it to wherever its row and column say)
+    private void checkTiles() {
+        for(int i = 0; i < tileCount && problem == null; i++) {
+            Tile t = tiles[i];
+            Tile there = board[t.row][t.col];
+            Tile twin = t.mergeTwin;
+            if(there != t && (there == null || there != twin))
+                problem = "tile " + GridBoard.valueOf(t.exponent) + " from (" + t.startRow + "," + t.startCol
+                        + ") was sent to (" + t.row + "," + t.col + "), which holds " + describe(there);
+            else if(twin != null && (twin.row != t.row || twin.col != t.col || twin.mergeTwin != t))
+                problem = "tile " + GridBoard.valueOf(t.exponent) + " at (" + t.row + "," + t.col
+                        + ") merges with one sent to (" + twin.row + "," + twin.col + ")";
+            else if(twin != null && twin.exponent != t.exponent)
+                problem = "tiles " + GridBoard.valueOf(t.exponent) + " and " + GridBoard.valueOf(twin.exponent)
+                        + " merged at (" + t.row + "," + t.col + ")";
+        }
+    }
+
+    private static String describe(Tile t) {
+        return (t == null)? "nothing" : "a " + GridBoard.valueOf(t.exponent) + " from (" + t.startRow + "," + t.startCol + ")";
+    }
+
+    // What the end of the animation does: each merged pair becomes one tile of twice the value
+    private void replaceMergedTiles() {
+        for(int i = 0; i < size; i++)
+            for(int j = 0; j < size; j++) {
+                Tile t = board[i][j];
+                int exponent = 0;
+                if(t != null) {
+                    exponent = t.exponent;
+                    if(t.mergeTwin != null) {
+                        exponent++;
+                        score += GridBoard.valueOf(exponent);
+                    }
+                }
+                cells[i * size + j] = exponent;
+            }
+        addTilesFromCells();
+    }
+
+    private void addTilesFromCells() {
+        tileCount = 0;
+        for(int i = 0; i < size; i++)
+            for(int j = 0; j < size; j++) {
+                board[i][j] = null;
+                if(cells[i * size + j] != 0)
+                    place(i * size + j, cells[i * size + j]);
+            }
+    }
+
+    // From here on, as in Board
+
+    private void simpleSlideRight() {
+        Tile[] tilesInCurRow;
+        int tilesInCurRowIndex;
+
+        for(int i = 0; i < size; i++) {
+            tilesInCurRow = clearLineBuffer();
+            tilesInCurRowIndex = size-1;
+
+            for(int j = size-1; j >= 0; j--) {
+                if(board[i][j] != null) {
+                    tilesInCurRow[tilesInCurRowIndex] = board[i][j];
+                    tilesInCurRowIndex--;
+                }
+            }
+            copyRowToBoard(tilesInCurRow, i);
+        }
+    }
+
+    private void simpleSlideLeft() {
+        Tile[] tilesInCurRow;
+        int tilesInCurRowIndex;
+
+        for(int i = 0; i < size; i++) {
+            tilesInCurRow = clearLineBuffer();
+            tilesInCurRowIndex = 0;
+
+            for(int j = 0; j < size; j++) {
+                if(board[i][j] != null) {
+                    tilesInCurRow[tilesInCurRowIndex] = board[i][j];
+                    tilesInCurRowIndex++;
+                }
+            }
+            copyRowToBoard(tilesInCurRow, i);
+        }
+    }
+
+    private void simpleSlideUp() {
+        Tile[] tilesInCurCol;
+        int tilesInCurColIndex;
+
+        for(int j = 0; j < size; j++) {
+            tilesInCurCol = clearLineBuffer();
+            tilesInCurColIndex = 0;
+
+            for(int i = 0; i < size; i++) {
+                if(board[i][j] != null) {
+                    tilesInCurCol[tilesInCurColIndex] = board[i][j];
+                    tilesInCurColIndex++;
+                }
+            }
+            copyColToBoard(tilesInCurCol, j);
+        }
+    }
+
+    private void simpleSlideDown() {
+        Tile[] tilesInCurCol;
+        int tilesInCurColIndex;
+
+        for(int j = 0; j < size; j++) {
+            tilesInCurCol = clearLineBuffer();
+            tilesInCurColIndex = size-1;
+
+            for(int i = size-1; i >= 0; i--) {
+                if(board[i][j] != null) {
+                    tilesInCurCol[tilesInCurColIndex] = board[i][j];
+                    tilesInCurColIndex--;
+                }
+            }
+            copyColToBoard(tilesInCurCol, j);
+        }
+    }
+
+    private void mergeRight() {
+        Tile curTile, nextTile;
+        for(int i = 0; i < size; i++) {
+            for(int j = size-1; j > 0; j--) {
+                curTile = board[i][j];
+                nextTile = board[i][j - 1];
+                if(curTile != null && nextTile != null) {
+                    if(curTile.exponent == nextTile.exponent) {
+                        mergeInto(nextTile, curTile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeLeft() {
+        Tile curTile, nextTile;
+        for(int i = 0; i < size; i++) {
+            for(int j = 0; j < size-1; j++) {
+                curTile = board[i][j];
+                nextTile = board[i][j + 1];
+                if(curTile != null && nextTile != null) {
+                    if(curTile.exponent == nextTile.exponent) {
+                        mergeInto(nextTile, curTile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeUp() {
+        Tile curTile, nextTile;
+        for(int j = 0; j < size; j++) {
+            for(int i = 0; i < size-1; i++) {
+                curTile = board[i][j];
+                nextTile = board[i+1][j];
+                if(curTile != null && nextTile != null) {
+                    if(curTile.exponent == nextTile.exponent) {
+                        mergeInto(nextTile, curTile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeDown() {
+        Tile curTile, nextTile;
+        for(int j = 0; j < size; j++) {
+            for(int i = size-1; i > 0; i--) {
+                curTile = board[i][j];
+                nextTile = board[i-1][j];
+                if(curTile != null && nextTile != null) {
+                    if(curTile.exponent == nextTile.exponent) {
+                        mergeInto(nextTile, curTile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeInto(Tile from, Tile to) {
+        board[from.row][from.col] = null;
+
+        from.row = to.row;
+        from.col = to.col;
+        from.mergeTwin = to;
+        to.mergeTwin = from;
+    }
+
+    private void copyRowToBoard(Tile[] row, int rowIndex) {
+        for(int j = 0; j < size; j++) {
+            board[rowIndex][j] = row[j];
+            if(board[rowIndex][j] != null) {
+                board[rowIndex][j].row = rowIndex;
+                board[rowIndex][j].col = j;
+
+                Tile mergeTwin = board[rowIndex][j].mergeTwin;
+                if(mergeTwin != null) {
+                    mergeTwin.row = rowIndex;
+                    mergeTwin.col = j;
+                }
+            }
+        }
+    }
+
+    private void copyColToBoard(Tile[] col, int colIndex) {
+        for(int i = 0; i < size; i++) {
+            board[i][colIndex] = col[i];
+            if(board[i][colIndex] != null) {
+                board[i][colIndex].row = i;
+                board[i][colIndex].col = colIndex;
+
+                Tile mergeTwin = board[i][colIndex].mergeTwin;
+                if(mergeTwin != null) {
+                    mergeTwin.row = i;
+                    mergeTwin.col = colIndex;
+                }
+            }
+        }
+    }
+
+    private Tile[] clearLineBuffer() {
+        for(int i = 0; i < size; i++)
+            lineBuffer[i] = null;
+        return lineBuffer;
+    }
+}
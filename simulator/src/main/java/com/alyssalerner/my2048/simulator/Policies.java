@@ -0,0 +1,92 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.ExpectimaxPlayer;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.NTupleNetwork;
+
+/**
+ * The built-in policies, selectable by name from the command line.
+ */
+public enum Policies {
+    // Any legal move, uniformly at random
+    RANDOM {
+        @Override
+        public Policy create(int depth, NTupleNetwork network) {
+            return new Policy() {
+                private final int[] legal = new int[BitBoard.N_DIRECTIONS];
+
+                @Override
+                public int chooseMove(long board, GameRandom rand) {
+                    int n = 0;
+                    for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                        if(BitBoard.canMove(board, direction))
+                            legal[n++] = direction;
+                    }
+                    return legal[rand.nextInt(n)];
+                }
+            };
+        }
+    },
+
+    // The move that scores the most points right now, preferring the one that leaves more empty cells
+    GREEDY {
+        @Override
+        public Policy create(int depth, NTupleNetwork network) {
+            return new Policy() {
+                @Override
+                public int chooseMove(long board, GameRandom rand) {
+                    int best = ExpectimaxPlayer.NO_MOVE;
+                    int bestScore = -1;
+                    int bestEmpty = -1;
+                    for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                        long moved = BitBoard.move(board, direction);
+                        if(moved == board) continue;
+
+                        int score = BitBoard.moveScore(board, direction);
+                        int empty = BitBoard.countEmpty(moved);
+                        if(score > bestScore || (score == bestScore && empty > bestEmpty)) {
+                            best = direction;
+                            bestScore = score;
+                            bestEmpty = empty;
+                        }
+                    }
+                    return best;
+                }
+            };
+        }
+    },
+
+    // Fixed-depth expectimax search on a single thread, since the simulator already fills every core
+    EXPECTIMAX {
+        @Override
+        public Policy create(int depth, NTupleNetwork network) {
+            final int searchDepth = depth;
+            final ExpectimaxPlayer player = new ExpectimaxPlayer(1, 18);
+            return new Policy() {
+                @Override
+                public int chooseMove(long board, GameRandom rand) {
+                    return player.chooseMove(board, searchDepth);
+                }
+            };
+        }
+    },
+
+    // The move a trained n-tuple network values most (see Trainer); the mapped weights are shared
+    NTUPLE {
+        @Override
+        public Policy create(int depth, final NTupleNetwork network) {
+            if(network == null) throw new IllegalArgumentException("the ntuple policy needs --weights");
+            return new Policy() {
+                @Override
+                public int chooseMove(long board, GameRandom rand) {
+                    return network.chooseMove(board);
+                }
+            };
+        }
+    };
+
+    // Make a new policy for one worker. depth is only used by searching policies, and network
+    // (which may be null) only by the ntuple policy.
+    public abstract Policy create(int depth, NTupleNetwork network);
+}
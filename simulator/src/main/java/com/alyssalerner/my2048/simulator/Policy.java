@@ -0,0 +1,12 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.GameRandom;
+
+/**
+ * Decides which way to move in a headless game. Each simulator worker gets its own instance, so
+ * implementations don't need to be thread-safe.
+ */
+public interface Policy {
+    // Return a BitBoard direction code for a legal move. Only called when some move is legal.
+    int chooseMove(long board, GameRandom rand);
+}
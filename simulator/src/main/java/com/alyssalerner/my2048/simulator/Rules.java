@@ -0,0 +1,29 @@
+package com.alyssalerner.my2048.simulator;
+
+/**
+ * One implementation of the sliding and merging rules, as driven by the Verifier. Cells are
+ * numbered row*size + col and hold tile exponents (0 = empty). Each Verifier worker gets its own
+ * instances, so implementations don't need to be thread-safe.
+ */
+public interface Rules {
+    String getName();
+
+    // True if a board of this size whose tiles reach 2^maxExponent can be represented
+    boolean canHold(int size, int maxExponent);
+
+    // Start from the given cells and score
+    void load(int size, int[] cells, long score);
+
+    // Put a new tile on an empty cell
+    void place(int cell, int exponent);
+
+    // Slide in the given BitBoard direction. Returns false, changing nothing, if no tile moved.
+    boolean move(int direction);
+
+    int getExponent(int cell);
+
+    long getScore();
+
+    // Describe anything wrong inside the implementation after the last move, or return null
+    String checkConsistency();
+}
@@ -0,0 +1,158 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GameState;
+import com.alyssalerner.my2048.Leaderboard;
+import com.alyssalerner.my2048.NTupleNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays complete games without a screen, spread over all cores, and prints aggregate statistics.
+ *
+ * Usage: Simulator [--games N] [--threads T] [--seed S] [--policy random|greedy|expectimax|ntuple] [--depth D]
+ *                  [--weights FILE] [--scores FILE]
+ *
+ * Game i always uses stream i of the seed (see GameRandom), whichever worker plays it, so a run
+ * can be repeated exactly with any number of threads. With --scores every game is also added to
+ * that score log (see Leaderboard), and the best games and score percentiles over the whole log
+ * are printed at the end.
+ */
+public class Simulator {
+    private final int threads;
+    private final long seed;
+    private final Policies policy;
+    private final int depth;
+    private final NTupleNetwork network;
+    private Leaderboard scores;
+
+    // network is the trained evaluator for the ntuple policy, or null
+    public Simulator(int threads, long seed, Policies policy, int depth, NTupleNetwork network) {
+        this.threads = threads;
+        this.seed = seed;
+        this.policy = policy;
+        this.depth = depth;
+        this.network = network;
+    }
+
+    // Also add every game to scores
+    public void setScores(Leaderboard scores) {
+        this.scores = scores;
+    }
+
+    public GameStats run(final long games) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final AtomicLong nextGame = new AtomicLong();
+        List<Future<GameStats>> results = new ArrayList<Future<GameStats>>();
+
+        for(int t = 0; t < threads; t++) {
+            results.add(pool.submit(new Callable<GameStats>() {
+                @Override
+                public GameStats call() throws IOException {
+                    Policy workerPolicy = policy.create(depth, network);
+                    GameStats stats = new GameStats();
+                    GameRandom rand = new GameRandom();
+                    GameState state = new GameState();
+
+                    for(long game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+                        rand.setSeed(seed, game);
+                        int moves = playGame(workerPolicy, rand, state, stats);
+                        if(scores != null)
+                            scores.record(state.getScore(), state.getMaxExponent(), moves);
+                    }
+                    return stats;
+                }
+            }));
+        }
+
+        GameStats total = new GameStats();
+        try {
+            for(Future<GameStats> result : results)
+                total.add(result.get());
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return total;
+    }
+
+    // Play one game from two random tiles until no move is possible, returning the number of moves
+    static int playGame(Policy policy, GameRandom rand, GameState game, GameStats stats) {
+        game.reset(0, 0);
+        game.spawn(rand);
+        game.spawn(rand);
+        int moves = 0;
+
+        while(game.movesAvailable()) {
+            game.move(policy.chooseMove(game.getBoard(), rand));
+            game.spawn(rand);
+            moves++;
+        }
+        stats.record(game.getScore(), moves, game.getMaxExponent());
+        return moves;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games = 100000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        Policies policy = Policies.RANDOM;
+        int depth = 2;
+        File weights = null;
+        File scoreLog = null;
+
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+
+            if(arg.equals("--games")) games = Long.parseLong(value);
+            else if(arg.equals("--threads")) threads = Integer.parseInt(value);
+            else if(arg.equals("--seed")) seed = Long.parseLong(value);
+            else if(arg.equals("--policy")) policy = Policies.valueOf(value.toUpperCase());
+            else if(arg.equals("--depth")) depth = Integer.parseInt(value);
+            else if(arg.equals("--weights")) weights = new File(value);
+            else if(arg.equals("--scores")) scoreLog = new File(value);
+            else usage("unknown option " + arg);
+        }
+
+        System.out.printf("policy %s, %d games on %d threads, seed %d%n", policy.name().toLowerCase(), games, threads, seed);
+        long start = System.nanoTime();
+        Simulator simulator = new Simulator(threads, seed, policy, depth, (weights == null)? null : NTupleNetwork.map(weights));
+        Leaderboard scores = (scoreLog == null)? null : Leaderboard.open(scoreLog, Leaderboard.DEFAULT_CAPACITY);
+        simulator.setScores(scores);
+        GameStats stats = simulator.run(games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        stats.print(System.out, seconds);
+        if(scores != null) {
+            scores.close();
+            printScores(scores);
+        }
+    }
+
+    private static void printScores(Leaderboard scores) {
+        System.out.printf("score log        %d games, mean %d%n", scores.getGames(), scores.getMeanScore());
+        System.out.printf("score p50/p90/p99/p99.9  %d / %d / %d / %d%n", scores.getPercentile(0.5), scores.getPercentile(0.9),
+                scores.getPercentile(0.99), scores.getPercentile(0.999));
+        System.out.println("best games:");
+        for(Leaderboard.Entry entry : scores.getBest(5))
+            System.out.printf("  %8d  %6d tile  %6d moves%n", entry.getScore(), BitBoard.valueOf(entry.getMaxExponent()), entry.getMoves());
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: Simulator [--games N] [--threads T] [--seed S] [--policy random|greedy|expectimax|ntuple] [--depth D] [--weights FILE] [--scores FILE]");
+        System.exit(2);
+    }
+}
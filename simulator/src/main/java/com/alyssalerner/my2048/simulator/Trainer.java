@@ -0,0 +1,223 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.NTupleNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trains an NTupleNetwork by self-play with temporal-difference learning, on all cores.
+ *
+ * Usage: Trainer [--games N] [--threads T] [--seed S] [--alpha A] [--weights FILE] [--report N]
+ *
+ * Every move is chosen greedily by the network being trained (NTupleNetwork.chooseMove), and the
+ * value of the position it leaves is pulled towards the points of the next move plus the value of
+ * the position after that (TD(0) on afterstates). The workers all update the one shared float[]
+ * without any locking ("Hogwild"): lost updates are rare, as two threads seldom touch the same
+ * weight at once, and cost far less than locks would. The weights are saved every --report games
+ * and at the end, and training resumes from FILE if it already exists. Unlike the Simulator, runs
+ * with more than one thread can't be repeated exactly.
+ */
+public class Trainer {
+    private final NTupleNetwork network;
+    private final int threads;
+    private final long seed;
+    private final float alpha;
+
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicLong finishedGames = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong scoreSum = new AtomicLong();
+    private final AtomicLong reached2048 = new AtomicLong();
+    private static final int WIN_EXPONENT = BitBoard.exponentOf(2048);
+    static volatile float sink;     // Keeps the timed evaluations from being optimised away
+
+    // alpha is the step size for a whole board, shared between the weights it looks up
+    public Trainer(NTupleNetwork network, int threads, long seed, float alpha) {
+        this.network = network;
+        this.threads = threads;
+        this.seed = seed;
+        this.alpha = alpha / NTupleNetwork.FEATURES;
+    }
+
+    // Train until `games` more games have been played, saving to weights (if not null) and
+    // reporting every `report` games
+    public void run(final long games, long report, File weights) throws InterruptedException, IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final long firstGame = network.getGamesTrained();
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+
+        for(int t = 0; t < threads; t++) {
+            workers.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    GameRandom rand = new GameRandom();
+                    for(long game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+                        rand.setSeed(seed, firstGame + game);
+                        trainGame(rand);
+                        finishedGames.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        pool.shutdown();
+
+        long start = System.nanoTime();
+        long lastTime = start;
+        long lastGames = 0;
+        long lastMoves = 0;
+        long lastScore = 0;
+        long last2048 = 0;
+        boolean done = false;
+        while(!done) {
+            done = pool.awaitTermination(100, TimeUnit.MILLISECONDS);
+            long finished = finishedGames.get();
+            if(!done && finished - lastGames < report) continue;
+
+            long now = System.nanoTime();
+            long n = finished - lastGames;
+            double seconds = (now - lastTime) / 1e9;
+            if(n > 0) {
+                System.out.printf("%10d games  %8.1f games/sec  %6.1f games/sec/core  %8.0f moves/sec  score %8.1f  2048 %5.1f%%%n",
+                        firstGame + finished, n / seconds, n / seconds / threads, (moves.get() - lastMoves) / seconds,
+                        (double) (scoreSum.get() - lastScore) / n, 100.0 * (reached2048.get() - last2048) / n);
+            }
+            lastTime = now;
+            lastGames = finished;
+            lastMoves = moves.get();
+            lastScore = scoreSum.get();
+            last2048 = reached2048.get();
+
+            network.setGamesTrained(firstGame + finished);
+            if(weights != null)
+                network.save(weights);
+        }
+
+        // Surface anything a worker threw
+        for(Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("trained %d games in %.1f s: %.1f games/sec, %.1f games/sec/core%n",
+                finishedGames.get(), seconds, finishedGames.get() / seconds, finishedGames.get() / seconds / threads);
+    }
+
+    // Play one game with the network, updating it after every move
+    private void trainGame(GameRandom rand) {
+        long board = BitBoard.spawn(BitBoard.spawn(0, rand), rand);
+        long previous = 0;          // Position left by the last move
+        boolean first = true;
+        long score = 0;
+        int moveCount = 0;
+
+        while(true) {
+            int direction = network.chooseMove(board);
+            if(direction == NTupleNetwork.NO_MOVE) break;
+
+            int reward = BitBoard.moveScore(board, direction);
+            long after = BitBoard.move(board, direction);
+            float value = network.evaluate(after);
+            if(!first)
+                network.update(previous, alpha * (reward + value - network.evaluate(previous)));
+
+            previous = after;
+            first = false;
+            score += reward;
+            moveCount++;
+            board = BitBoard.spawn(after, rand);
+        }
+        // Nothing more is earned after the last move
+        if(!first)
+            network.update(previous, -alpha * network.evaluate(previous));
+
+        moves.addAndGet(moveCount);
+        scoreSum.addAndGet(score);
+        if(BitBoard.maxExponent(board) >= WIN_EXPONENT)
+            reached2048.incrementAndGet();
+    }
+
+    // Time NTupleNetwork.evaluate and chooseMove over positions from games the network plays
+    static void reportLatency(NTupleNetwork network, String name) {
+        GameRandom rand = new GameRandom(2048);
+        long[] boards = new long[4096];
+        int n = 0;
+        while(n < boards.length) {
+            long board = BitBoard.spawn(BitBoard.spawn(0, rand), rand);
+            int direction;
+            while(n < boards.length && (direction = network.chooseMove(board)) != NTupleNetwork.NO_MOVE) {
+                boards[n++] = board;
+                board = BitBoard.spawn(BitBoard.move(board, direction), rand);
+            }
+        }
+
+        float sum = 0;
+        long evaluateNanos = Long.MAX_VALUE;
+        long chooseNanos = Long.MAX_VALUE;
+        // Best of several rounds, the first ones warming up the JIT
+        for(int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            for(long board : boards)
+                sum += network.evaluate(board);
+            long middle = System.nanoTime();
+            for(long board : boards)
+                sum += network.chooseMove(board);
+            long end = System.nanoTime();
+            evaluateNanos = Math.min(evaluateNanos, middle - start);
+            chooseNanos = Math.min(chooseNanos, end - middle);
+        }
+        sink = sum;
+        System.out.printf("%s weights: evaluate %.0f ns, chooseMove %.0f ns%n", name,
+                (double) evaluateNanos / boards.length, (double) chooseNanos / boards.length);
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games = 100000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        float alpha = 0.1f;
+        File weights = new File(NTupleNetwork.FILE_NAME);
+        long report = 10000;
+
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+
+            if(arg.equals("--games")) games = Long.parseLong(value);
+            else if(arg.equals("--threads")) threads = Integer.parseInt(value);
+            else if(arg.equals("--seed")) seed = Long.parseLong(value);
+            else if(arg.equals("--alpha")) alpha = Float.parseFloat(value);
+            else if(arg.equals("--weights")) weights = new File(value);
+            else if(arg.equals("--report")) report = Long.parseLong(value);
+            else usage("unknown option " + arg);
+        }
+
+        NTupleNetwork network = weights.isFile()? NTupleNetwork.read(weights) : NTupleNetwork.create();
+        System.out.printf("training %d games on %d threads, alpha %s, seed %d, from %d games in %s%n",
+                games, threads, alpha, seed, network.getGamesTrained(), weights);
+        new Trainer(network, threads, seed, alpha).run(games, report, weights);
+
+        reportLatency(network, "in-memory");
+        reportLatency(NTupleNetwork.map(weights), "mapped");
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: Trainer [--games N] [--threads T] [--seed S] [--alpha A] [--weights FILE] [--report N]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,397 @@
+package com.alyssalerner.my2048.simulator;
+
+import com.alyssalerner.my2048.BitBoard;
+import com.alyssalerner.my2048.GameRandom;
+import com.alyssalerner.my2048.GridBoard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays every implementation of the rules side by side and stops at the first move on which any
+ * of them disagrees with Board's (LegacyRules), on all cores.
+ *
+ * Usage: Verifier [--moves N] [--threads T] [--seed S] [--size N] [--line-budget N]
+ *
+ * First every line of every board size is checked in every direction, for all tile values up to
+ * the largest for which a size has no more than --line-budget lines: this covers chains such as
+ * 2 2 4 8 and 4 4 4 4 exhaustively. Then games of the given size are played until --moves moves
+ * have been compared. Each game is seeded with stream <game> of --seed, and every implementation
+ * gets the same new tiles. Moves mostly favour one corner, so that games last and build large
+ * tiles, with a random one now and then. After every move (including ones that don't move
+ * anything) the tiles, score and whether anything moved must match, and each implementation's own
+ * consistency checks must pass. A difference is shrunk to a minimal position, by clearing and
+ * lowering tiles while a difference remains, and printed together with the game it came from.
+ *
+ * To check a new implementation, add it to createRules().
+ */
+public class Verifier {
+    private static final int BLOCK = 4096;          // Lines handed to a worker at a time
+    private static final int[] PREFERRED = {BitBoard.DOWN, BitBoard.LEFT, BitBoard.RIGHT, BitBoard.UP};
+    private static final String[] DIRECTION_NAMES = {"right", "left", "up", "down"};
+
+    private final int size;
+    private final int threads;
+    private final long seed;
+    private final int[] lineMax = new int[GridBoard.MAX_SIZE + 1];      // Largest exponent tried, by size
+    private final long[] lineStart = new long[GridBoard.MAX_SIZE + 2];  // First line of each size
+
+    private final AtomicLong nextLine = new AtomicLong();
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicLong checkedLines = new AtomicLong();
+    private final AtomicLong checkedMoves = new AtomicLong();
+    private final AtomicLong finishedGames = new AtomicLong();
+    private final AtomicReference<String> difference = new AtomicReference<String>();
+
+    public Verifier(int size, int threads, long seed, long lineBudget) {
+        this.size = size;
+        this.threads = threads;
+        this.seed = seed;
+        for(int s = GridBoard.MIN_SIZE; s <= GridBoard.MAX_SIZE; s++) {
+            int max = 1;
+            while(max < GridBoard.MAX_EXPONENT - 1 && Math.pow(max + 2, s) <= lineBudget)
+                max++;
+            lineMax[s] = max;
+            lineStart[s + 1] = lineStart[s] + (long) Math.pow(max + 1, s);
+        }
+        for(int s = 0; s < GridBoard.MIN_SIZE; s++)
+            lineStart[s + 1] = lineStart[GridBoard.MIN_SIZE];
+    }
+
+    // The implementations compared, the reference (Board's rules) first
+    static Rules[] createRules() {
+        return new Rules[] {new LegacyRules(), new GridRules(), new BitBoardRules()};
+    }
+
+    // Check every line, then play until `moves` moves have been compared. Returns the first
+    // difference found, shrunk, or null if there was none.
+    public String run(final long moves, long reportNanos) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for(int t = 0; t < threads; t++) {
+            workers.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Lockstep lockstep = new Lockstep();
+                    checkLines(lockstep);
+                    GameRandom rand = new GameRandom();
+                    while(difference.get() == null && checkedMoves.get() < moves) {
+                        long game = nextGame.getAndIncrement();
+                        rand.setSeed(seed, game);
+                        playGame(lockstep, rand, game);
+                        finishedGames.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        pool.shutdown();
+
+        long start = System.nanoTime();
+        long lastTime = start;
+        long lastMoves = 0;
+        long lastLines = 0;
+        boolean done = false;
+        while(!done) {
+            done = pool.awaitTermination(reportNanos, TimeUnit.NANOSECONDS);
+            long now = System.nanoTime();
+            double seconds = (now - lastTime) / 1e9;
+            long lines = checkedLines.get();
+            long moved = checkedMoves.get();
+            System.out.printf("%12d lines %8.0f lines/sec  %14d moves %10.0f moves/sec  %10d games%n",
+                    lines, (lines - lastLines) / seconds, moved, (moved - lastMoves) / seconds, finishedGames.get());
+            lastTime = now;
+            lastLines = lines;
+            lastMoves = moved;
+        }
+
+        // Surface anything a worker threw
+        for(Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("checked %d lines and %d moves in %d games in %.1f s: %.0f moves/sec, %.0f moves/sec/core%n",
+                checkedLines.get(), checkedMoves.get(), finishedGames.get(), seconds,
+                checkedMoves.get() / seconds, checkedMoves.get() / seconds / threads);
+        return difference.get();
+    }
+
+    // Check blocks of lines until there are none left. Line n of a size is n written in base
+    // lineMax + 1, one digit per cell, and is placed in row (or column) n % size of an empty board.
+    private void checkLines(Lockstep lockstep) {
+        int[] cells = new int[GridBoard.MAX_SIZE * GridBoard.MAX_SIZE];
+        long total = lineStart[GridBoard.MAX_SIZE + 1];
+        for(long block = nextLine.getAndAdd(BLOCK); block < total; block = nextLine.getAndAdd(BLOCK)) {
+            long end = Math.min(total, block + BLOCK);
+            for(long line = block; line < end; line++) {
+                if(difference.get() != null) return;
+                int s = GridBoard.MIN_SIZE;
+                while(line >= lineStart[s + 1]) s++;
+                long n = line - lineStart[s];
+                int index = (int) (n % s);
+
+                for(int direction = 0; direction < BitBoard.N_DIRECTIONS; direction++) {
+                    boolean across = direction == BitBoard.RIGHT || direction == BitBoard.LEFT;
+                    Arrays.fill(cells, 0, s * s, 0);
+                    long digits = n;
+                    for(int i = 0; i < s; i++) {
+                        int exponent = (int) (digits % (lineMax[s] + 1));
+                        digits /= lineMax[s] + 1;
+                        cells[across? index * s + i : i * s + index] = exponent;
+                    }
+                    String found = lockstep.check(s, cells, 0, direction);
+                    if(found != null) {
+                        report(lockstep, s, cells, 0, direction, "line " + n + " of size " + s);
+                        return;
+                    }
+                }
+            }
+            checkedLines.addAndGet(end - block);
+        }
+    }
+
+    // Play one game to the end in lockstep
+    private void playGame(Lockstep lockstep, GameRandom rand, long game) {
+        int cellCount = size * size;
+        int[] before = new int[cellCount];
+        lockstep.start(size);
+        lockstep.spawn(rand);
+        lockstep.spawn(rand);
+
+        int moveCount = 0;
+        boolean moved = true;
+        while(moved) {
+            // Mostly the first of the preferred directions that moves, sometimes any
+            int first = (rand.nextInt(4) == 0)? rand.nextInt(BitBoard.N_DIRECTIONS) : -1;
+            moved = false;
+            for(int k = 0; k < BitBoard.N_DIRECTIONS && !moved; k++) {
+                int direction = (first < 0)? PREFERRED[k] : (first + k) % BitBoard.N_DIRECTIONS;
+                System.arraycopy(lockstep.cells, 0, before, 0, cellCount);
+                long scoreBefore = lockstep.score;
+                moveCount++;
+                if(lockstep.step(direction) != null) {
+                    report(lockstep, size, before, scoreBefore, direction,
+                            "move " + moveCount + " of game " + game + " (--seed " + seed + ")");
+                    checkedMoves.addAndGet(moveCount);
+                    return;
+                }
+                moved = lockstep.moved;
+            }
+            if(moved) lockstep.spawn(rand);
+        }
+        checkedMoves.addAndGet(moveCount);
+    }
+
+    // Shrink the position to a minimal one that still shows a difference and keep it, unless
+    // another worker got there first
+    private void report(Lockstep lockstep, int size, int[] cells, long score, int direction, String where) {
+        int[] position = Arrays.copyOf(cells, size * size);
+        if(lockstep.check(size, position, 0, direction) != null)
+            score = 0;      // The score played no part
+        boolean shrunk = true;
+        while(shrunk) {
+            shrunk = false;
+            for(int cell = 0; cell < position.length; cell++) {
+                int exponent = position[cell];
+                if(exponent == 0) continue;
+                // Clear the tile, or failing that make it as small as will still do
+                position[cell] = 0;
+                if(lockstep.check(size, position, score, direction) != null) {
+                    shrunk = true;
+                    continue;
+                }
+                position[cell] = exponent;
+                for(int lower = 1; lower < exponent; lower++) {
+                    position[cell] = lower;
+                    if(lockstep.check(size, position, score, direction) != null) {
+                        shrunk = true;
+                        break;
+                    }
+                    position[cell] = exponent;
+                }
+            }
+        }
+        difference.compareAndSet(null, lockstep.explain(size, position, score, direction) + "  found at " + where + "\n");
+    }
+
+    // Every implementation playing the same game
+    private static final class Lockstep {
+        final Rules[] rules = createRules();
+        final boolean[] active = new boolean[rules.length];
+        final int[] cells = new int[GridBoard.MAX_SIZE * GridBoard.MAX_SIZE];  // The reference's cells
+        int size;
+        int maxExponent;
+        int emptyCount;
+        long score;
+        boolean moved;
+
+        // Start every implementation that can hold it on an empty board
+        void start(int size) {
+            load(size, null, 0);
+        }
+
+        void load(int size, int[] from, long score) {
+            this.size = size;
+            this.score = score;
+            maxExponent = 0;
+            emptyCount = 0;
+            for(int cell = 0; cell < size * size; cell++) {
+                cells[cell] = (from == null)? 0 : from[cell];
+                maxExponent = Math.max(maxExponent, cells[cell]);
+                if(cells[cell] == 0) emptyCount++;
+            }
+            for(int i = 0; i < rules.length; i++) {
+                active[i] = rules[i].canHold(size, maxExponent + 1);
+                if(active[i]) rules[i].load(size, cells, score);
+            }
+        }
+
+        // Place the same new tile in every implementation, the same way as GridBoard.spawn
+        void spawn(GameRandom rand) {
+            int exponent = BitBoard.randomTileExponent(rand);
+            if(emptyCount == 0) return;
+            int k = rand.nextInt(emptyCount);
+            int cell = 0;
+            for(; ; cell++) {
+                if(cells[cell] == 0 && k-- == 0) break;
+            }
+            cells[cell] = exponent;
+            emptyCount--;
+            maxExponent = Math.max(maxExponent, exponent);
+            for(int i = 0; i < rules.length; i++) {
+                if(active[i]) rules[i].place(cell, exponent);
+            }
+        }
+
+        // Make the move in every implementation. Returns null if they all agree, and otherwise
+        // what differs. Implementations that could overflow on this move sit the rest of the game out.
+        String step(int direction) {
+            for(int i = 0; i < rules.length; i++) {
+                if(active[i] && !rules[i].canHold(size, maxExponent + 1))
+                    active[i] = false;
+            }
+
+            Rules reference = rules[0];
+            moved = reference.move(direction);
+            String problem = reference.checkConsistency();
+            if(problem != null) return reference.getName() + " " + problem;
+            for(int i = 1; i < rules.length; i++) {
+                if(!active[i]) continue;
+                Rules other = rules[i];
+                if(other.move(direction) != moved)
+                    return other.getName() + (moved? " didn't move" : " moved");
+                problem = other.checkConsistency();
+                if(problem != null) return other.getName() + " " + problem;
+                if(other.getScore() != reference.getScore())
+                    return other.getName() + " scored " + other.getScore() + ", not " + reference.getScore();
+            }
+
+            // The reference's cells, then everyone else's against them
+            emptyCount = 0;
+            for(int cell = 0; cell < size * size; cell++) {
+                int exponent = reference.getExponent(cell);
+                cells[cell] = exponent;
+                if(exponent == 0) emptyCount++;
+                maxExponent = Math.max(maxExponent, exponent);
+            }
+            score = reference.getScore();
+            for(int i = 1; i < rules.length; i++) {
+                if(!active[i]) continue;
+                for(int cell = 0; cell < size * size; cell++) {
+                    if(rules[i].getExponent(cell) != cells[cell])
+                        return rules[i].getName() + " has " + GridBoard.valueOf(rules[i].getExponent(cell)) + " at ("
+                                + cell / size + "," + cell % size + "), not " + GridBoard.valueOf(cells[cell]);
+                }
+            }
+            return null;
+        }
+
+        // Load the position into every implementation and make one move
+        String check(int size, int[] position, long score, int direction) {
+            load(size, position, score);
+            return step(direction);
+        }
+
+        // The position, the move and what each implementation made of it
+        String explain(int size, int[] position, long score, int direction) {
+            StringBuilder text = new StringBuilder();
+            String found = check(size, position, score, direction);
+            text.append(found).append(" after moving ").append(DIRECTION_NAMES[direction]).append(" from\n");
+            appendBoard(text, size, position, score);
+            int[] after = new int[size * size];
+            load(size, position, score);
+            for(int i = 0; i < rules.length; i++) {
+                if(!active[i]) continue;
+                boolean slid = rules[i].move(direction);
+                for(int cell = 0; cell < after.length; cell++)
+                    after[cell] = rules[i].getExponent(cell);
+                text.append(rules[i].getName()).append(slid? "" : " (didn't move)").append(":\n");
+                appendBoard(text, size, after, rules[i].getScore());
+            }
+            return text.toString();
+        }
+
+        private static void appendBoard(StringBuilder text, int size, int[] cells, long score) {
+            for(int r = 0; r < size; r++) {
+                text.append("  ");
+                for(int c = 0; c < size; c++) {
+                    int exponent = cells[r * size + c];
+                    text.append(String.format("%6s", (exponent == 0)? "." : String.valueOf(GridBoard.valueOf(exponent))));
+                }
+                text.append('\n');
+            }
+            text.append("  score ").append(score).append('\n');
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long moves = 1000000000L;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int size = BitBoard.ROWS;
+        long lineBudget = 1 << 20;
+
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+
+            if(arg.equals("--moves")) moves = Long.parseLong(value);
+            else if(arg.equals("--threads")) threads = Integer.parseInt(value);
+            else if(arg.equals("--seed")) seed = Long.parseLong(value);
+            else if(arg.equals("--size")) size = Integer.parseInt(value);
+            else if(arg.equals("--line-budget")) lineBudget = Long.parseLong(value);
+            else usage("unknown option " + arg);
+        }
+        if(size < GridBoard.MIN_SIZE || size > GridBoard.MAX_SIZE)
+            usage("size must be between " + GridBoard.MIN_SIZE + " and " + GridBoard.MAX_SIZE);
+
+        StringBuilder names = new StringBuilder();
+        for(Rules r : createRules())
+            names.append(' ').append(r.getName());
+        System.out.printf("comparing%s: %d moves of size %d on %d threads, seed %d%n", names, moves, size, threads, seed);
+        String difference = new Verifier(size, threads, seed, lineBudget).run(moves, TimeUnit.SECONDS.toNanos(10));
+        if(difference != null) {
+            System.out.print(difference);
+            System.exit(1);
+        }
+        System.out.println("no differences");
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: Verifier [--moves N] [--threads T] [--seed S] [--size N] [--line-budget N]");
+        System.exit(2);
+    }
+}